@@ -27,6 +27,7 @@ plugins {
     `maven-publish`
     signing
     alias(libs.plugins.extra.java.module.info)
+    alias(libs.plugins.jmh)
 }
 
 group = "io.github.themrmilchmann.stash"
@@ -72,6 +73,17 @@ tasks {
     }
 }
 
+jmh {
+    jmhVersion.set(libs.versions.jmh)
+
+    // The number of threads may be set using -Pjmh.threads=<count>.
+    (project.findProperty("jmh.threads") as String?)?.let { threads.set(it.toInt()) }
+
+    // The benchmarked backends and sizes may be set using -Pjmh.backends=<backend>,... and -Pjmh.sizes=<size>,...
+    (project.findProperty("jmh.backends") as String?)?.let { benchmarkParameters.put("backend", objects.listProperty<String>().value(it.split(","))) }
+    (project.findProperty("jmh.sizes") as String?)?.let { benchmarkParameters.put("size", objects.listProperty<String>().value(it.split(","))) }
+}
+
 publishing {
     repositories {
         maven {
@@ -135,6 +147,7 @@ repositories {
 
 extraJavaModuleInfo {
     automaticModule(libs.jsr305.orNull!!.module.toString(), "jsr305")
+    automaticModule("org.apache.commons:commons-math3", "commons.math3")
 }
 
 dependencies {
@@ -0,0 +1,276 @@
+/*
+ * Copyright (c) 2022 Leon Linhart
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package io.github.themrmilchmann.stash;
+
+import io.github.themrmilchmann.stash.internal.platform.linux.GuardedMemoryStorageFactory;
+import io.github.themrmilchmann.stash.internal.platform.linux.LockedMemoryStorageFactory;
+import io.github.themrmilchmann.stash.internal.platform.linux.SecretMemoryStorageFactory;
+import io.github.themrmilchmann.stash.internal.platform.universal.AesGcmStorageFactory;
+import io.github.themrmilchmann.stash.internal.platform.universal.OffHeapStorageFactory;
+import io.github.themrmilchmann.stash.internal.platform.universal.UniversalStorageFactory;
+import io.github.themrmilchmann.stash.internal.platform.win32.DPAPIStorageFactory;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Benchmarks the hot path of a stash for every storage backend.
+ *
+ * By default, only the backends that are supported on every host are
+ * benchmarked. Platform-specific backends ("lockedMemory", "guardedMemory",
+ * "secretMemory", "keyring", and "dpapi") must be selected explicitly using the
+ * "jmh.backends" Gradle property (for example,
+ * -Pjmh.backends=offHeap,lockedMemory). A selected backend that is not
+ * supported on the host fails during setup. The kernel keyring only supports
+ * payloads of up to 32767 bytes, so it must be combined with smaller sizes
+ * (for example, -Pjmh.sizes=16,1024).
+ *
+ * The "Shared" benchmarks use a single secret for all threads, while the
+ * "Distinct" benchmarks use a secret per thread. Both are run with 1, 2, 4,
+ * and as many threads as there are processors to measure how they scale under
+ * contention. (Setting the "jmh.threads" Gradle property overrides the thread
+ * count of all benchmarks.)
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StashBenchmark {
+
+    /*
+     * Puts are measured in batches since the stash has to be cleared after each
+     * invocation. This amortizes the overhead of the per-invocation fixture
+     * while keeping the number of live secrets (and thus memory usage) low.
+     */
+    private static final int PUT_BATCH_SIZE = 64;
+
+    private static final BufferSerializer<byte[]> SERIALIZER = new BufferSerializer<>() {
+
+        @Override
+        public byte[] deserialize(ByteBuffer source) {
+            byte[] bytes = new byte[source.remaining()];
+            source.get(bytes);
+
+            return bytes;
+        }
+
+        @Override
+        public void serialize(byte[] data, ByteBuffer sink) {
+            sink.put(data);
+        }
+
+        @Override
+        public int sizeHint(byte[] data) {
+            return data.length;
+        }
+
+    };
+
+    private static final SecretSpec<byte[]> SPEC = SecretSpec.builder(SERIALIZER).build();
+
+    @State(Scope.Benchmark)
+    public static class StashState {
+
+        @Param({ "universal", "aesGcm", "offHeap", "envelope" })
+        public String backend;
+
+        @Param({ "16", "1024", "65536", "1048576" })
+        public int size;
+
+        Stash stash;
+        byte[] payload;
+
+        @Setup
+        public void setup() {
+            Stash.Builder builder = Stash.builder();
+
+            StorageFactory<?> storageFactory = switch (this.backend) {
+                case "universal" -> new UniversalStorageFactory();
+                case "aesGcm" -> new AesGcmStorageFactory();
+                case "offHeap" -> new OffHeapStorageFactory();
+                case "envelope" -> null;
+                case "lockedMemory" -> new LockedMemoryStorageFactory();
+                case "guardedMemory" -> new GuardedMemoryStorageFactory();
+                case "secretMemory" -> new SecretMemoryStorageFactory();
+                case "keyring" -> StorageFactory.kernelKeyring();
+                case "dpapi" -> new DPAPIStorageFactory();
+                default -> throw new IllegalArgumentException(this.backend);
+            };
+
+            if (storageFactory != null) {
+                if (!storageFactory.isSupported()) throw new IllegalStateException(this.backend + " is not supported");
+                builder.withStorageFactory(storageFactory);
+            } else {
+                builder.withEnvelopeEncryption(true);
+            }
+
+            this.stash = builder.build();
+
+            this.payload = new byte[this.size];
+            new Random(0).nextBytes(this.payload);
+
+            // Fail early if the payload is too large for the backend.
+            this.stash.put(SPEC, this.payload);
+            this.stash.clear();
+        }
+
+        @TearDown
+        public void tearDown() {
+            this.stash.close();
+        }
+
+    }
+
+    @State(Scope.Benchmark)
+    public static class SharedSecret {
+
+        Secret<byte[]> secret;
+
+        @Setup
+        public void setup(StashState state) {
+            this.secret = state.stash.put(SPEC, state.payload);
+        }
+
+    }
+
+    @State(Scope.Thread)
+    public static class DistinctSecret {
+
+        Secret<byte[]> secret;
+
+        @Setup
+        public void setup(StashState state) {
+            this.secret = state.stash.put(SPEC, state.payload);
+        }
+
+    }
+
+    @State(Scope.Thread)
+    public static class HeldSecret {
+
+        Secret<byte[]>.Lock lock;
+
+        @Setup
+        public void setup(StashState state) {
+            this.lock = state.stash.put(SPEC, state.payload).acquire();
+        }
+
+        @TearDown
+        public void tearDown() {
+            this.lock.release();
+        }
+
+    }
+
+    @State(Scope.Thread)
+    public static class PutState {
+
+        @TearDown(Level.Invocation)
+        public void tearDown(StashState state) {
+            state.stash.clear();
+        }
+
+    }
+
+    private static byte[] acquireRelease(Secret<byte[]> secret) {
+        try (Secret<byte[]>.Lock lock = secret.acquire()) {
+            return lock.get().orElseThrow();
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(PUT_BATCH_SIZE)
+    public void put(StashState state, PutState ignored, Blackhole blackhole) {
+        for (int i = 0; i < PUT_BATCH_SIZE; i++) blackhole.consume(state.stash.put(SPEC, state.payload));
+    }
+
+    @Benchmark
+    @Threads(1)
+    public byte[] acquireReleaseShared_1(SharedSecret shared) {
+        return acquireRelease(shared.secret);
+    }
+
+    @Benchmark
+    @Threads(2)
+    public byte[] acquireReleaseShared_2(SharedSecret shared) {
+        return acquireRelease(shared.secret);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public byte[] acquireReleaseShared_4(SharedSecret shared) {
+        return acquireRelease(shared.secret);
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public byte[] acquireReleaseShared_max(SharedSecret shared) {
+        return acquireRelease(shared.secret);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public byte[] acquireReleaseDistinct_1(DistinctSecret distinct) {
+        return acquireRelease(distinct.secret);
+    }
+
+    @Benchmark
+    @Threads(2)
+    public byte[] acquireReleaseDistinct_2(DistinctSecret distinct) {
+        return acquireRelease(distinct.secret);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public byte[] acquireReleaseDistinct_4(DistinctSecret distinct) {
+        return acquireRelease(distinct.secret);
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public byte[] acquireReleaseDistinct_max(DistinctSecret distinct) {
+        return acquireRelease(distinct.secret);
+    }
+
+    @Benchmark
+    public byte[] acquireSetReleaseDistinct(StashState state, DistinctSecret distinct) {
+        try (Secret<byte[]>.Lock lock = distinct.secret.acquire()) {
+            lock.set(state.payload);
+            return lock.get().orElseThrow();
+        }
+    }
+
+    @Benchmark
+    public byte[] getHeld(HeldSecret held) {
+        return held.lock.get().orElseThrow();
+    }
+
+    @Benchmark
+    public void setHeld(StashState state, HeldSecret held) {
+        held.lock.set(state.payload);
+    }
+
+}
\ No newline at end of file
@@ -0,0 +1,85 @@
+/*
+ * Copyright (c) 2022 Leon Linhart
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package io.github.themrmilchmann.stash.internal.platform.universal;
+
+import io.github.themrmilchmann.stash.internal.InstancePool;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import javax.crypto.Cipher;
+import javax.crypto.NoSuchPaddingException;
+import java.security.NoSuchAlgorithmException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class UniversalStorageBenchmark {
+
+    private static Cipher createCipher() {
+        try {
+            return Cipher.getInstance(UniversalStorageFactory.ALGORITHM);
+        } catch (NoSuchAlgorithmException | NoSuchPaddingException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Param({ "16", "256", "4096" })
+    private int size;
+
+    private final UniversalStorageFactory factory = new UniversalStorageFactory();
+    private final InstancePool<Cipher> ciphers = new InstancePool<>(UniversalStorageBenchmark::createCipher, 1);
+
+    private byte[] bytes;
+
+    @Setup
+    public void setup() {
+        this.bytes = new byte[this.size];
+        new Random(0).nextBytes(this.bytes);
+    }
+
+    @Benchmark
+    public Cipher cipherLookup() {
+        return createCipher();
+    }
+
+    @Benchmark
+    public Cipher cipherPooled() {
+        Cipher cipher = this.ciphers.acquire();
+        this.ciphers.release(cipher);
+
+        return cipher;
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public void writeRead(Blackhole blackhole) {
+        UniversalStorage storage = this.factory.create();
+        storage.write(this.bytes);
+        blackhole.consume(storage.read());
+    }
+
+}
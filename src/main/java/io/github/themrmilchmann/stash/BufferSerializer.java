@@ -0,0 +1,126 @@
+/*
+ * Copyright (c) 2022 Leon Linhart
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package io.github.themrmilchmann.stash;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * A {@link Serializer} that reads from and writes to {@link ByteBuffer buffers}
+ * provided by the caller instead of working on intermediate arrays.
+ *
+ * <p>{@link Secret Secrets} prefer this contract when it is available. The
+ * buffers passed to a {@code BufferSerializer} by a secret are (whenever
+ * possible) direct buffers that are zeroed by the secret after use. Thus, the
+ * serialized representation of the data is never copied around on the heap.</p>
+ *
+ * @param <T>   the type of data processed by this serializer
+ *
+ * @since   0.2.0
+ *
+ * @author  Leon Linhart
+ */
+public interface BufferSerializer<T> extends Serializer<T> {
+
+    /**
+     * Deserializes data of type {@code T} from the {@link ByteBuffer#remaining()
+     * remaining} bytes of the given {@code source}.
+     *
+     * <p>The given buffer should not be stored or referenced outside of this
+     * method. Modifications of its content are unsupported and may lead to
+     * undefined behavior.</p>
+     *
+     * @param source    the buffer to deserialize from
+     *
+     * @return  the deserialized data
+     *
+     * @since   0.2.0
+     */
+    T deserialize(ByteBuffer source);
+
+    /**
+     * Serializes the given {@code data} into the given {@code sink}, starting at
+     * the sink's current {@link ByteBuffer#position() position}.
+     *
+     * <p>The sink is guaranteed to have at least {@link #sizeHint(Object)
+     * sizeHint(data)} bytes remaining. Implementations must advance the
+     * position of the sink by the number of written bytes.</p>
+     *
+     * @param data  the data to serialize
+     * @param sink  the buffer to serialize into
+     *
+     * @since   0.2.0
+     */
+    void serialize(T data, ByteBuffer sink);
+
+    /**
+     * {@return an upper bound for the number of bytes required to serialize the
+     * given {@code data}}
+     *
+     * <p>The returned value is used to pre-size the buffers passed to
+     * {@link #serialize(Object, ByteBuffer)}. Thus, it should be as tight as
+     * reasonably possible.</p>
+     *
+     * @param data  the data to serialize
+     *
+     * @since   0.2.0
+     */
+    int sizeHint(T data);
+
+    /**
+     * {@inheritDoc}
+     *
+     * @implSpec    The default implementation wraps the given {@code bytes} and
+     *              delegates to {@link #deserialize(ByteBuffer)}.
+     *
+     * @since   0.2.0
+     */
+    @Override
+    default T deserialize(byte[] bytes) {
+        return this.deserialize(ByteBuffer.wrap(bytes));
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @implSpec    The default implementation serializes the given {@code data}
+     *              into a temporary array using {@link #serialize(Object, ByteBuffer)}
+     *              and returns a trimmed copy. The temporary array is zeroed
+     *              afterwards.
+     *
+     * @since   0.2.0
+     */
+    @Override
+    default byte[] serialize(T data) {
+        byte[] bytes = new byte[this.sizeHint(data)];
+
+        try {
+            ByteBuffer sink = ByteBuffer.wrap(bytes);
+            this.serialize(data, sink);
+
+            return Arrays.copyOf(bytes, sink.position());
+        } finally {
+            Arrays.fill(bytes, (byte) 0);
+        }
+    }
+
+}
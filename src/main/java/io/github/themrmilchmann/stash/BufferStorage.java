@@ -0,0 +1,144 @@
+/*
+ * Copyright (c) 2022 Leon Linhart
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package io.github.themrmilchmann.stash;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A {@link Storage} that reads into and writes from {@link ByteBuffer buffers}
+ * provided by the caller.
+ *
+ * <p>Compared to the array-based methods of {@code Storage}, this contract
+ * allows callers to control where plaintext data is placed and thus avoids
+ * intermediate copies. Arbitrary storages can be adapted to this contract using
+ * {@link #adapt(Storage)}.</p>
+ *
+ * @since   0.2.0
+ *
+ * @author  Leon Linhart
+ */
+public interface BufferStorage extends Storage {
+
+    /**
+     * {@return the given storage as {@code BufferStorage}}
+     *
+     * <p>If the given storage does not implement this interface already, it is
+     * wrapped in an adapter that delegates to the array-based methods.</p>
+     *
+     * @param storage   the storage to adapt
+     *
+     * @since   0.2.0
+     */
+    static BufferStorage adapt(Storage storage) {
+        return (storage instanceof BufferStorage bufferStorage) ? bufferStorage : new StorageAdapter(storage);
+    }
+
+    /**
+     * {@return the size of the plaintext data in this storage in bytes}
+     *
+     * @since   0.2.0
+     */
+    int size();
+
+    /**
+     * Reads the plaintext data in this storage into the given {@code dst}
+     * buffer, starting at the buffer's current position. The position of the
+     * buffer is advanced by {@link #size()} bytes.
+     *
+     * @param dst   the buffer to read into
+     *
+     * @throws java.nio.BufferOverflowException if the buffer has fewer than {@code size()} bytes remaining
+     *
+     * @apiNote Typically, reading from a storage is a destructive operation and
+     *          callers should not assume that two successive reads will
+     *          succeed.
+     *
+     * @since   0.2.0
+     */
+    void read(ByteBuffer dst);
+
+    /**
+     * Reads the plaintext data in this storage into the given {@code dst}
+     * buffer like {@link #read(ByteBuffer)}, but keeps the data in this storage
+     * if possible.
+     *
+     * <p>If the data has been kept, it may be read again without being
+     * {@link #write(ByteBuffer) written} first. This allows callers that did
+     * not modify the data to skip writing it back.</p>
+     *
+     * @param dst   the buffer to read into
+     *
+     * @return  whether the data has been kept in this storage
+     *
+     * @throws java.nio.BufferOverflowException if the buffer has fewer than {@code size()} bytes remaining
+     *
+     * @implSpec    The default implementation delegates to
+     *              {@link #read(ByteBuffer)} and returns {@code false}.
+     *
+     * @since   0.2.0
+     */
+    default boolean peek(ByteBuffer dst) {
+        this.read(dst);
+        return false;
+    }
+
+    /**
+     * Writes the {@link ByteBuffer#remaining() remaining} bytes of the given
+     * {@code src} buffer into this storage. The position of the buffer is
+     * advanced to its limit.
+     *
+     * @param src   the buffer to write from
+     *
+     * @since   0.2.0
+     */
+    void write(ByteBuffer src);
+
+    /**
+     * {@inheritDoc}
+     *
+     * @implSpec    The default implementation reads into a new array of
+     *              {@link #size()} bytes using {@link #read(ByteBuffer)}.
+     *
+     * @since   0.2.0
+     */
+    @Override
+    default byte[] read() {
+        byte[] bytes = new byte[this.size()];
+        this.read(ByteBuffer.wrap(bytes));
+
+        return bytes;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @implSpec    The default implementation wraps the given {@code bytes} and
+     *              delegates to {@link #write(ByteBuffer)}.
+     *
+     * @since   0.2.0
+     */
+    @Override
+    default void write(byte[] bytes) {
+        this.write(ByteBuffer.wrap(bytes));
+    }
+
+}
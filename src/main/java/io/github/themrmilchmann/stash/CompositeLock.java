@@ -0,0 +1,174 @@
+/*
+ * Copyright (c) 2022 Leon Linhart
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package io.github.themrmilchmann.stash;
+
+import java.lang.reflect.UndeclaredThrowableException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * A composite lock holds onto several {@link Secret secrets} at once.
+ *
+ * <p>Composite locks are {@link Secret#acquireAll(Secret[]) acquired} for a
+ * set of secrets and provide access to a {@link Secret.Lock lock} for each of
+ * them. Releasing a composite lock releases all of its locks.</p>
+ *
+ * @since   0.2.0
+ *
+ * @author  Leon Linhart
+ */
+public final class CompositeLock implements AutoCloseable {
+
+    /**
+     * Acquires the given secrets in order.
+     *
+     * <p>Secrets that are not currently held have to be read from storage.
+     * If there are several of those, they are acquired by tasks in the common
+     * pool and read in parallel.</p>
+     *
+     * <p>If any secret cannot be acquired, regardless of what is thrown, the
+     * locks that have been acquired are released again before the failure is
+     * rethrown.</p>
+     */
+    static CompositeLock acquire(Secret<?>[] secrets) {
+        int pending = 0;
+
+        for (Secret<?> secret : secrets) {
+            if (!secret.isHeld()) pending++;
+        }
+
+        List<ForkJoinTask<? extends Secret<?>.Lock>> tasks = new ArrayList<>(secrets.length);
+
+        for (Secret<?> secret : secrets) {
+            ForkJoinTask<? extends Secret<?>.Lock> task = null;
+
+            if (pending > 1 && !secret.isHeld()) {
+                task = ForkJoinTask.adapt(secret::acquire);
+                task.fork();
+            }
+
+            tasks.add(task);
+        }
+
+        Map<Secret<?>, Secret<?>.Lock> locks = new IdentityHashMap<>(secrets.length);
+        Throwable failure = null;
+
+        for (int i = 0; i < secrets.length; i++) {
+            ForkJoinTask<? extends Secret<?>.Lock> task = tasks.get(i);
+
+            try {
+                locks.put(secrets[i], (task != null) ? task.join() : secrets[i].acquire());
+            } catch (Throwable t) {
+                if (failure == null) {
+                    failure = t;
+                } else {
+                    failure.addSuppressed(t);
+                }
+            }
+        }
+
+        if (failure != null) {
+            for (Secret<?>.Lock lock : locks.values()) {
+                try {
+                    lock.release();
+                } catch (Throwable t) {
+                    failure.addSuppressed(t);
+                }
+            }
+
+            if (failure instanceof RuntimeException e) throw e;
+            if (failure instanceof Error e) throw e;
+
+            // Checked exceptions may only be thrown sneakily.
+            throw new UndeclaredThrowableException(failure);
+        }
+
+        return new CompositeLock(secrets, locks);
+    }
+
+    private final Secret<?>[] secrets;
+    private final Map<Secret<?>, Secret<?>.Lock> locks;
+
+    private CompositeLock(Secret<?>[] secrets, Map<Secret<?>, Secret<?>.Lock> locks) {
+        this.secrets = secrets;
+        this.locks = Collections.unmodifiableMap(locks);
+    }
+
+    /**
+     * {@link #release() Releases} this lock.
+     *
+     * @since   0.2.0
+     */
+    @Override
+    public void close() {
+        this.release();
+    }
+
+    /**
+     * {@return the lock that holds onto the given secret}
+     *
+     * @param <T>       the type of the secret
+     * @param secret    the secret
+     *
+     * @throws IllegalArgumentException if this lock does not hold onto the given secret
+     *
+     * @since   0.2.0
+     */
+    @SuppressWarnings("unchecked")
+    public <T> Secret<T>.Lock get(Secret<T> secret) {
+        Secret<?>.Lock lock = this.locks.get(secret);
+        if (lock == null) throw new IllegalArgumentException("Secret is not held by this lock");
+
+        return (Secret<T>.Lock) lock;
+    }
+
+    /**
+     * Releases all locks held by this lock, in the reverse order of their
+     * acquisition.
+     *
+     * <p>This method does nothing for locks that have already been released.</p>
+     *
+     * @since   0.2.0
+     */
+    public void release() {
+        RuntimeException failure = null;
+
+        for (int i = this.secrets.length - 1; i >= 0; i--) {
+            try {
+                this.locks.get(this.secrets[i]).release();
+            } catch (RuntimeException e) {
+                if (failure == null) {
+                    failure = e;
+                } else {
+                    failure.addSuppressed(e);
+                }
+            }
+        }
+
+        if (failure != null) throw failure;
+    }
+
+}
\ No newline at end of file
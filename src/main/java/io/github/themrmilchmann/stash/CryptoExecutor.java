@@ -0,0 +1,74 @@
+/*
+ * Copyright (c) 2022 Leon Linhart
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package io.github.themrmilchmann.stash;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+
+/**
+ * An executor for the cryptographic work of asynchronous operations on
+ * {@link Secret secrets}.
+ *
+ * <p>Tasks are handed to an underlying {@link Executor}. The number of tasks
+ * that have been submitted but not yet completed is bounded. Once the bound
+ * has been reached, further tasks are rejected instead of queued to propagate
+ * backpressure to the caller.</p>
+ *
+ * @author  Leon Linhart
+ */
+final class CryptoExecutor {
+
+    private final Executor executor;
+    private final Semaphore permits;
+
+    CryptoExecutor(Executor executor, int maxPendingTasks) {
+        this.executor = executor;
+        this.permits = new Semaphore(maxPendingTasks);
+    }
+
+    /**
+     * Attempts to submit the given task.
+     *
+     * @return  whether the task has been submitted, or {@code false} if too
+     *          many tasks are pending or the underlying executor rejected it
+     */
+    boolean tryExecute(Runnable task) {
+        if (!this.permits.tryAcquire()) return false;
+
+        try {
+            this.executor.execute(() -> {
+                try {
+                    task.run();
+                } finally {
+                    this.permits.release();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            this.permits.release();
+            return false;
+        }
+
+        return true;
+    }
+
+}
\ No newline at end of file
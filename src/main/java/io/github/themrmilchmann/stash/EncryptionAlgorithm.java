@@ -0,0 +1,59 @@
+/*
+ * Copyright (c) 2022 Leon Linhart
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package io.github.themrmilchmann.stash;
+
+/**
+ * The algorithms that may be used to encrypt secrets in process memory.
+ *
+ * @see Stash.Builder#withEncryptionAlgorithm(EncryptionAlgorithm)
+ *
+ * @since   0.2.0
+ *
+ * @author  Leon Linhart
+ */
+public enum EncryptionAlgorithm {
+    /**
+     * Selects the fastest of the other algorithms on the current host.
+     *
+     * <p>If the JVM reports whether it uses the AES instructions of the CPU,
+     * AES-GCM is selected if (and only if) they are used. Otherwise, AES-GCM is
+     * selected on x86-64 and AArch64 hosts, and ChaCha20 everywhere else.</p>
+     *
+     * @since   0.2.0
+     */
+    AUTO,
+    /**
+     * The ChaCha20 stream cipher.
+     *
+     * @since   0.2.0
+     */
+    CHACHA20,
+    /**
+     * AES with a 256-bit key in Galois/Counter Mode.
+     *
+     * <p>In contrast to {@link #CHACHA20}, the encrypted data is
+     * authenticated.</p>
+     *
+     * @since   0.2.0
+     */
+    AES_GCM
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright (c) 2022 Leon Linhart
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package io.github.themrmilchmann.stash;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The revocation epoch of a {@link Stash}.
+ *
+ * <p>Every secret remembers the epoch in which it has been created. Advancing
+ * the epoch revokes all secrets that have been created before, and makes all
+ * of their locks unusable. Checking whether a secret has been revoked is a
+ * single volatile read.</p>
+ *
+ * @author  Leon Linhart
+ */
+final class Epoch {
+
+    private final AtomicLong value = new AtomicLong();
+
+    /**
+     * {@return the current epoch}
+     */
+    long get() {
+        return this.value.get();
+    }
+
+    /**
+     * Advances the epoch, revoking all secrets that have been created in
+     * previous epochs.
+     */
+    void advance() {
+        this.value.incrementAndGet();
+    }
+
+}
\ No newline at end of file
@@ -0,0 +1,326 @@
+/*
+ * Copyright (c) 2022 Leon Linhart
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package io.github.themrmilchmann.stash;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * {@link StashMetrics} that aggregate all measurements into {@link Histogram histograms}.
+ *
+ * <p>Recording a measurement is lock-free and does not allocate. The
+ * histograms may be read concurrently at any time, for example, to export
+ * them periodically.</p>
+ *
+ * @since   0.2.0
+ *
+ * @author  Leon Linhart
+ */
+public final class HistogramStashMetrics implements StashMetrics {
+
+    private final Histogram putLatency = new Histogram();
+    private final Histogram acquireColdLatency = new Histogram();
+    private final Histogram acquireWarmLatency = new Histogram();
+    private final Histogram releaseLatency = new Histogram();
+    private final Histogram encryptLatency = new Histogram();
+    private final Histogram decryptLatency = new Histogram();
+    private final Histogram serializeLatency = new Histogram();
+    private final Histogram deserializeLatency = new Histogram();
+    private final Histogram payloadSize = new Histogram();
+
+    /**
+     * Creates new, empty metrics.
+     *
+     * @since   0.2.0
+     */
+    public HistogramStashMetrics() {}
+
+    /**
+     * {@return the histogram of the durations of puts in nanoseconds}
+     *
+     * @since   0.2.0
+     */
+    public Histogram getPutLatency() {
+        return this.putLatency;
+    }
+
+    /**
+     * {@return the histogram of the durations of cold acquisitions in nanoseconds}
+     *
+     * @see StashMetrics#onAcquire(long, boolean)
+     *
+     * @since   0.2.0
+     */
+    public Histogram getAcquireColdLatency() {
+        return this.acquireColdLatency;
+    }
+
+    /**
+     * {@return the histogram of the durations of warm acquisitions in nanoseconds}
+     *
+     * @see StashMetrics#onAcquire(long, boolean)
+     *
+     * @since   0.2.0
+     */
+    public Histogram getAcquireWarmLatency() {
+        return this.acquireWarmLatency;
+    }
+
+    /**
+     * {@return the histogram of the durations of releases in nanoseconds}
+     *
+     * @since   0.2.0
+     */
+    public Histogram getReleaseLatency() {
+        return this.releaseLatency;
+    }
+
+    /**
+     * {@return the histogram of the durations of writes to storage in nanoseconds}
+     *
+     * @since   0.2.0
+     */
+    public Histogram getEncryptLatency() {
+        return this.encryptLatency;
+    }
+
+    /**
+     * {@return the histogram of the durations of reads from storage in nanoseconds}
+     *
+     * @since   0.2.0
+     */
+    public Histogram getDecryptLatency() {
+        return this.decryptLatency;
+    }
+
+    /**
+     * {@return the histogram of the durations of serializations in nanoseconds}
+     *
+     * @since   0.2.0
+     */
+    public Histogram getSerializeLatency() {
+        return this.serializeLatency;
+    }
+
+    /**
+     * {@return the histogram of the durations of deserializations in nanoseconds}
+     *
+     * @since   0.2.0
+     */
+    public Histogram getDeserializeLatency() {
+        return this.deserializeLatency;
+    }
+
+    /**
+     * {@return the histogram of the sizes of the secrets that have been put in bytes}
+     *
+     * @since   0.2.0
+     */
+    public Histogram getPayloadSize() {
+        return this.payloadSize;
+    }
+
+    @Override
+    public void onPut(long nanos, int size) {
+        this.putLatency.record(nanos);
+        this.payloadSize.record(size);
+    }
+
+    @Override
+    public void onAcquire(long nanos, boolean isCold) {
+        (isCold ? this.acquireColdLatency : this.acquireWarmLatency).record(nanos);
+    }
+
+    @Override
+    public void onRelease(long nanos) {
+        this.releaseLatency.record(nanos);
+    }
+
+    @Override
+    public void onEncrypt(long nanos, int size) {
+        this.encryptLatency.record(nanos);
+    }
+
+    @Override
+    public void onDecrypt(long nanos, int size) {
+        this.decryptLatency.record(nanos);
+    }
+
+    @Override
+    public void onSerialize(long nanos, int size) {
+        this.serializeLatency.record(nanos);
+    }
+
+    @Override
+    public void onDeserialize(long nanos, int size) {
+        this.deserializeLatency.record(nanos);
+    }
+
+    /**
+     * A lock-free histogram of non-negative values.
+     *
+     * <p>Values are counted in log-linear buckets: Each power of two is split
+     * into {@value #SUB_BUCKET_COUNT} buckets of equal width, so that the
+     * relative error of a reported value is below 6.25%. Values below
+     * {@value #SUB_BUCKET_COUNT} are counted exactly. Each bucket is a
+     * {@link LongAdder}, so that concurrent recordings do not contend.</p>
+     *
+     * <p>Reading a histogram while values are recorded concurrently does not
+     * block, but the result may not reflect the concurrent recordings.</p>
+     *
+     * @since   0.2.0
+     */
+    public static final class Histogram {
+
+        private static final int SUB_BUCKET_BITS = 4;
+        private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+        private static final int BUCKET_COUNT = (Long.SIZE - SUB_BUCKET_BITS) * SUB_BUCKET_COUNT;
+
+        private final LongAdder[] buckets = new LongAdder[BUCKET_COUNT];
+        private final LongAdder count = new LongAdder();
+        private final LongAdder sum = new LongAdder();
+        private final LongAccumulator max = new LongAccumulator(Math::max, 0L);
+
+        /**
+         * Creates a new, empty histogram.
+         *
+         * @since   0.2.0
+         */
+        public Histogram() {
+            for (int i = 0; i < BUCKET_COUNT; i++) this.buckets[i] = new LongAdder();
+        }
+
+        /*
+         * Values below SUB_BUCKET_COUNT map to their own bucket. Larger values
+         * map to one of the SUB_BUCKET_COUNT buckets for their power of two,
+         * depending on the bits that follow the highest one bit.
+         */
+        private static int indexOf(long value) {
+            if (value < SUB_BUCKET_COUNT) return (int) value;
+
+            int exponent = (Long.SIZE - 1) - Long.numberOfLeadingZeros(value);
+            int mantissa = (int) (value >>> (exponent - SUB_BUCKET_BITS));
+
+            return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKET_COUNT + (mantissa - SUB_BUCKET_COUNT);
+        }
+
+        /*
+         * Returns the largest value that maps to the bucket with the given
+         * index.
+         */
+        private static long highestValueOf(int index) {
+            if (index < SUB_BUCKET_COUNT) return index;
+
+            int group = index / SUB_BUCKET_COUNT;
+            long lowest = (long) (SUB_BUCKET_COUNT + (index % SUB_BUCKET_COUNT)) << (group - 1);
+
+            return lowest + (1L << (group - 1)) - 1;
+        }
+
+        /**
+         * Records the given value.
+         *
+         * <p>Negative values are recorded as zero.</p>
+         *
+         * @param value the value to record
+         *
+         * @since   0.2.0
+         */
+        public void record(long value) {
+            if (value < 0) value = 0;
+
+            this.buckets[indexOf(value)].increment();
+            this.count.increment();
+            this.sum.add(value);
+            this.max.accumulate(value);
+        }
+
+        /**
+         * {@return the number of recorded values}
+         *
+         * @since   0.2.0
+         */
+        public long getCount() {
+            return this.count.sum();
+        }
+
+        /**
+         * {@return the largest recorded value, or {@code 0} if no values have
+         * been recorded}
+         *
+         * @since   0.2.0
+         */
+        public long getMax() {
+            return this.max.get();
+        }
+
+        /**
+         * {@return the arithmetic mean of the recorded values, or {@code 0} if
+         * no values have been recorded}
+         *
+         * @since   0.2.0
+         */
+        public double getMean() {
+            long count = this.count.sum();
+            return (count > 0) ? (double) this.sum.sum() / count : 0.0D;
+        }
+
+        /**
+         * {@return the value below which the given percentage of the recorded
+         * values fall, or {@code 0} if no values have been recorded}
+         *
+         * <p>The returned value is the largest value that is counted in the same
+         * bucket as the exact result, but never larger than {@link #getMax()}.</p>
+         *
+         * @param percentile    the percentile in the range {@code [0, 100]}
+         *
+         * @throws IllegalArgumentException if the percentile is out of range
+         *
+         * @since   0.2.0
+         */
+        public long getValueAtPercentile(double percentile) {
+            if (!(percentile >= 0.0D && percentile <= 100.0D)) throw new IllegalArgumentException("Percentile must be in range [0, 100]: " + percentile);
+
+            long[] counts = new long[BUCKET_COUNT];
+            long total = 0;
+
+            for (int i = 0; i < BUCKET_COUNT; i++) {
+                counts[i] = this.buckets[i].sum();
+                total += counts[i];
+            }
+
+            if (total == 0) return 0;
+
+            long rank = Math.max(1L, (long) Math.ceil(percentile / 100.0D * total));
+            long seen = 0;
+
+            for (int i = 0; i < BUCKET_COUNT; i++) {
+                seen += counts[i];
+                if (seen >= rank) return Math.min(highestValueOf(i), this.getMax());
+            }
+
+            return this.getMax();
+        }
+
+    }
+
+}
\ No newline at end of file
@@ -21,11 +21,25 @@
  */
 package io.github.themrmilchmann.stash;
 
+import io.github.themrmilchmann.stash.internal.ScratchBufferPool;
+
 import javax.annotation.Nullable;
+import java.nio.ByteBuffer;
+import java.time.Duration;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
 import java.util.Objects;
 import java.util.Optional;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.function.Supplier;
 
 /**
@@ -36,6 +50,10 @@ import java.util.function.Supplier;
  * Locks provide scoped access to a secret and can be used to query, modify or
  * dispose it.</p>
  *
+ * <p>Secrets are safe for use by multiple concurrent threads. While a secret
+ * is held by at least one lock, acquiring and releasing further locks and
+ * accessing the secret's value never block.</p>
+ *
  * @param <T>   the type of the secret
  *
  * @since   0.1.0
@@ -44,29 +62,142 @@ import java.util.function.Supplier;
  */
 public final class Secret<T> {
 
-    private final AtomicLong locks = new AtomicLong();
+    /*
+     * The state of a secret is encoded in a single integer:
+     *
+     *  - a positive value is the number of locks that hold onto the (loaded)
+     *    secret,
+     *  - IDLE means that no lock holds onto the secret and that its data is in
+     *    storage (or the warm cache),
+     *  - LOADING and BUSY are transient states during which a single thread
+     *    moves the data from or to storage, and
+     *  - DISPOSED is the terminal state.
+     *
+     * Transitions between positive values are performed using CAS only. Only
+     * threads that observe a transient state park until the transition has
+     * completed. This way, only the first acquirer reads the secret from
+     * storage while others wait for it (instead of spinning).
+     */
+    private static final int IDLE = 0;
+    private static final int LOADING = -1;
+    private static final int BUSY = -2;
+    private static final int DISPOSED = Integer.MIN_VALUE;
+
+    private static final VarHandle IS_RELEASED;
+
+    /*
+     * Secrets are ordered by their IDs when they are acquired together. Since
+     * IDs are unique for the lifetime of the process, this order is global.
+     */
+    private static final AtomicLong NEXT_ID = new AtomicLong();
+
+    static {
+        try {
+            IS_RELEASED = MethodHandles.lookup().findVarHandle(Secret.Lock.class, "isReleased", boolean.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    final long id = NEXT_ID.getAndIncrement();
+
+    private final AtomicInteger state = new AtomicInteger(IDLE);
+
+    private final ReentrantLock transitionLock = new ReentrantLock();
+    private final Condition transitioned = this.transitionLock.newCondition();
+    private final AtomicInteger waiters = new AtomicInteger();
 
     private final SecretSpec<T> spec;
-    private final Storage storage;
+    private final BufferStorage storage;
+    private final ScratchBufferPool scratchBuffers;
+    @Nullable private final WarmCache warmCache;
     private final Runnable onDispose;
 
-    private final Object disposeLock = new Object();
-    private boolean isDisposed;
+    private final Epoch epoch;
+    private final long createdEpoch;
 
-    @Nullable private T data;
+    private final CryptoExecutor cryptoExecutor;
+    @Nullable private final StashMetrics metrics;
 
-    Secret(SecretSpec<T> spec, Storage storage, Runnable onDispose, T value) {
+    @Nullable private volatile T data;
+
+    // Set whenever the value is modified by a lock.
+    private volatile boolean isDirty;
+
+    // Guarded by the transient states (or DISPOSED).
+    @Nullable private WarmCache.Entry warm;
+    private boolean isRetained;
+
+    Secret(SecretSpec<T> spec, BufferStorage storage, ScratchBufferPool scratchBuffers, @Nullable WarmCache warmCache, Epoch epoch, CryptoExecutor cryptoExecutor, @Nullable StashMetrics metrics, Runnable onDispose, T value, long putStart) {
         this.spec = spec;
         this.storage = storage;
+        this.scratchBuffers = scratchBuffers;
+        this.warmCache = warmCache;
+        this.epoch = epoch;
+        this.createdEpoch = epoch.get();
+        this.cryptoExecutor = cryptoExecutor;
+        this.metrics = metrics;
         this.onDispose = onDispose;
 
-        byte[] bytes = this.spec.getSerializer().serialize(value);
+        // The size is taken from the write since querying it may require reading the storage.
+        int size = this.writeToStorage(value);
+        if (metrics != null) metrics.onPut(System.nanoTime() - putStart, size);
+    }
 
-        try {
-            this.storage.write(bytes);
-        } finally {
-            Arrays.fill(bytes, (byte) 0);
-        }
+    /**
+     * Acquires locks that hold onto all the given secrets at once.
+     *
+     * <p>The secrets are acquired in a global order, regardless of the order in
+     * which they are passed to this method, and each secret is acquired only
+     * once. Only secrets that have to be read from storage are read in
+     * parallel using the {@link java.util.concurrent.ForkJoinPool#commonPool() common pool}.
+     * This is safe since acquiring a secret never waits for other locks to be
+     * released.</p>
+     *
+     * <p>If any of the secrets cannot be acquired, the locks that have already
+     * been acquired are released before the exception is rethrown.</p>
+     *
+     * @param secrets   the secrets to acquire
+     *
+     * @return  a composite lock that holds onto all the given secrets
+     *
+     * @throws IllegalStateException    if any of the secrets was already disposed or {@link Stash#revokeAll() revoked}
+     *
+     * @since   0.2.0
+     */
+    public static CompositeLock acquireAll(Secret<?>... secrets) {
+        return acquireAll(Arrays.asList(secrets));
+    }
+
+    /**
+     * Acquires locks that hold onto all the given secrets at once.
+     *
+     * <p>The secrets are acquired in a global order, regardless of the order in
+     * which they are passed to this method, and each secret is acquired only
+     * once. Only secrets that have to be read from storage are read in
+     * parallel using the {@link java.util.concurrent.ForkJoinPool#commonPool() common pool}.
+     * This is safe since acquiring a secret never waits for other locks to be
+     * released.</p>
+     *
+     * <p>If any of the secrets cannot be acquired, the locks that have already
+     * been acquired are released before the exception is rethrown.</p>
+     *
+     * @param secrets   the secrets to acquire
+     *
+     * @return  a composite lock that holds onto all the given secrets
+     *
+     * @throws IllegalStateException    if any of the secrets was already disposed or {@link Stash#revokeAll() revoked}
+     *
+     * @since   0.2.0
+     */
+    public static CompositeLock acquireAll(Collection<? extends Secret<?>> secrets) {
+        Secret<?>[] sorted = secrets.stream()
+            .map(Objects::requireNonNull)
+            .distinct()
+            .sorted(Comparator.comparingLong(secret -> secret.id))
+            .toArray(Secret<?>[]::new);
+
+        return CompositeLock.acquire(sorted);
     }
 
     /**
@@ -78,9 +209,19 @@ public final class Secret<T> {
      * storage into memory. It is released from memory again when the last lock
      * is released.</p>
      *
+     * <p>If the stash {@link Stash.Builder#withKeepWarm(java.time.Duration, long) keeps secrets warm},
+     * the plaintext of a released secret is kept in memory for a grace period
+     * instead. Acquiring the secret during this period does not involve the
+     * storage at all.</p>
+     *
+     * <p>If the secret has not been {@link Lock#set(Object) modified} while it
+     * was held, releasing it does not require serializing and writing it back
+     * to storage if the storage was able to keep the data (see
+     * {@link BufferStorage#peek(ByteBuffer)}).</p>
+     *
      * @return  a new lock that holds onto this secret
      *
-     * @throws IllegalStateException    if the secret was already disposed
+     * @throws IllegalStateException    if the secret was already disposed or {@link Stash#revokeAll() revoked}
      *
      * @implNote    This implementation uses a reference-counting algorithm that
      *              implicitly caps the number of available locks for a secret
@@ -89,36 +230,574 @@ public final class Secret<T> {
      * @since   0.1.0
      */
     public Lock acquire() {
-        synchronized (this.disposeLock) {
-            if (this.isDisposed) throw new IllegalStateException();
+        return this.acquire(false);
+    }
 
-            long locks = this.locks.getAndIncrement();
-            if (locks < 0) throw new IllegalStateException("Too many locks");
+    /**
+     * Acquires a read-only {@link Lock} that holds onto this secret. A
+     * read-only lock may be used to read from a secret, but not to modify it.
+     *
+     * <p>Acquiring a read-only lock behaves exactly like
+     * {@link #acquire() acquiring} an ordinary lock. However, callers that only
+     * read a secret should prefer read-only locks to make sure that the secret
+     * is not modified accidentally.</p>
+     *
+     * @return  a new read-only lock that holds onto this secret
+     *
+     * @throws IllegalStateException    if the secret was already disposed or {@link Stash#revokeAll() revoked}
+     *
+     * @since   0.2.0
+     */
+    public Lock acquireReadOnly() {
+        return this.acquire(true);
+    }
 
-            if (locks == 0) {
-                byte[] bytes = this.storage.read();
+    /**
+     * Asynchronously acquires a {@link Lock} that holds onto this secret.
+     *
+     * <p>If the secret is already held by another lock, the returned future is
+     * completed immediately. Otherwise, reading the secret from storage is
+     * performed by the {@link Stash.Builder#withCryptoExecutor(java.util.concurrent.Executor, int) crypto executor}
+     * of the stash. Thus, this method never blocks and may be used by threads
+     * that must not perform blocking or CPU-intensive work (such as event
+     * loops).</p>
+     *
+     * <p>If the crypto executor has too many pending tasks, the returned future
+     * is completed exceptionally with a {@link RejectedExecutionException}.
+     * If the returned future is cancelled before the lock has been acquired,
+     * the lock is released again.</p>
+     *
+     * @return  a future that is completed with a new lock that holds onto this
+     *          secret, or exceptionally with an {@link IllegalStateException}
+     *          if the secret was already disposed or {@link Stash#revokeAll() revoked}
+     *
+     * @since   0.2.0
+     */
+    public CompletableFuture<Lock> acquireAsync() {
+        if (this.isRevoked()) return CompletableFuture.failedFuture(new IllegalStateException("Cannot acquire a revoked secret"));
+        if (this.state.get() == DISPOSED) return CompletableFuture.failedFuture(new IllegalStateException("Cannot acquire a disposed secret"));
 
-                try {
-                    this.data = this.spec.getSerializer().deserialize(bytes);
-                } finally {
-                    Arrays.fill(bytes, (byte) 0);
+        // Acquiring a held secret is cheap and can be done right away.
+        long start = this.startMeasurement();
+
+        for (int state; (state = this.state.get()) > 0 && state < Integer.MAX_VALUE; ) {
+            if (this.state.compareAndSet(state, state + 1)) return CompletableFuture.completedFuture(this.acquired(new Lock(false), start, false));
+        }
+
+        CompletableFuture<Lock> future = new CompletableFuture<>();
+
+        boolean isSubmitted = this.cryptoExecutor.tryExecute(() -> {
+            if (future.isDone()) return;
+
+            try {
+                Lock lock = this.acquire(false);
+                if (!future.complete(lock)) lock.release();
+            } catch (RuntimeException | Error e) {
+                future.completeExceptionally(e);
+            }
+        });
+
+        if (!isSubmitted) future.completeExceptionally(new RejectedExecutionException("Too many pending asynchronous operations"));
+        return future;
+    }
+
+    /**
+     * Acquires a {@link Lock} that holds onto this secret, unless the current
+     * thread is {@link Thread#interrupt() interrupted}.
+     *
+     * <p>This method behaves like {@link #acquire()}, except that waiting for
+     * another thread to finish reading the secret from (or writing it to)
+     * storage may be interrupted.</p>
+     *
+     * @return  a new lock that holds onto this secret
+     *
+     * @throws IllegalStateException    if the secret was already disposed or {@link Stash#revokeAll() revoked}
+     * @throws InterruptedException     if the current thread is interrupted while waiting
+     *
+     * @since   0.2.0
+     */
+    public Lock acquireInterruptibly() throws InterruptedException {
+        if (Thread.interrupted()) throw new InterruptedException();
+
+        long start = this.startMeasurement();
+        Lock lock;
+
+        while ((lock = this.tryAcquireNow(false, start)) == null) this.awaitTransitionNanos(Long.MAX_VALUE);
+
+        return lock;
+    }
+
+    /**
+     * Acquires a {@link Lock} that holds onto this secret, if it becomes
+     * available within the given timeout.
+     *
+     * <p>This method behaves like {@link #acquireInterruptibly()}, except that
+     * it gives up once the timeout has elapsed while waiting for another thread
+     * to finish reading the secret from (or writing it to) storage. If the
+     * current thread has to read the secret from storage itself, it does so
+     * regardless of the timeout.</p>
+     *
+     * @param timeout   the maximum time to wait
+     *
+     * @return  a new lock that holds onto this secret, or an empty
+     *          {@code Optional} if the timeout elapsed
+     *
+     * @throws IllegalStateException    if the secret was already disposed or {@link Stash#revokeAll() revoked}
+     * @throws InterruptedException     if the current thread is interrupted while waiting
+     *
+     * @since   0.2.0
+     */
+    public Optional<Lock> tryAcquire(Duration timeout) throws InterruptedException {
+        if (Thread.interrupted()) throw new InterruptedException();
+
+        long nanos = timeout.toNanos();
+        long start = this.startMeasurement();
+        Lock lock;
+
+        while ((lock = this.tryAcquireNow(false, start)) == null) {
+            if (nanos <= 0) return Optional.empty();
+            nanos = this.awaitTransitionNanos(nanos);
+        }
+
+        return Optional.of(lock);
+    }
+
+    private Lock acquire(boolean isReadOnly) {
+        long start = this.startMeasurement();
+        Lock lock;
+
+        while ((lock = this.tryAcquireNow(isReadOnly, start)) == null) this.awaitTransition();
+
+        return lock;
+    }
+
+    /*
+     * Acquires a lock without waiting for other threads. Returns null if
+     * another thread is currently moving the secret from or to storage. The
+     * given start time is used to measure the acquisition.
+     */
+    @Nullable
+    private Lock tryAcquireNow(boolean isReadOnly, long start) {
+        for (;;) {
+            if (this.isRevoked()) throw new IllegalStateException("Cannot acquire a revoked secret");
+            int state = this.state.get();
+
+            if (state > 0) {
+                if (state == Integer.MAX_VALUE) throw new IllegalStateException("Too many locks");
+                if (this.state.compareAndSet(state, state + 1)) return this.acquired(new Lock(isReadOnly), start, false);
+            } else if (state == IDLE) {
+                if (this.state.compareAndSet(IDLE, LOADING)) {
+                    boolean isCold = (this.warm == null);
+
+                    try {
+                        this.isDirty = false;
+                        this.data = (this.warm != null) ? this.readFromWarm(this.warm) : this.readFromStorage();
+                    } catch (RuntimeException | Error e) {
+                        this.transition(IDLE);
+                        throw e;
+                    }
+
+                    this.transition(1);
+                    return this.acquired(new Lock(isReadOnly), start, isCold);
                 }
+            } else if (state == DISPOSED) {
+                throw new IllegalStateException();
+            } else {
+                return null;
+            }
+        }
+    }
+
+    /*
+     * Releases a lock if it is not the last one holding onto this secret.
+     * Returns whether the lock has been released (or the secret has been
+     * disposed in the meantime).
+     */
+    private boolean tryReleaseShared() {
+        for (;;) {
+            int state = this.state.get();
+            if (state == DISPOSED) return true;
+
+            assert (state > 0);
+
+            if (state == 1) return false;
+            if (this.state.compareAndSet(state, state - 1)) return true;
+        }
+    }
+
+    /*
+     * Releases the last lock that holds onto this secret.
+     */
+    private void releaseLast() {
+        for (;;) {
+            int state = this.state.get();
+            if (state == DISPOSED) return;
+
+            assert (state > 0);
+
+            if (state > 1) {
+                // Another lock has been acquired concurrently.
+                if (this.state.compareAndSet(state, state - 1)) return;
+            } else if (this.state.compareAndSet(1, BUSY)) {
+                break;
             }
+        }
+
+        List<WarmCache.Entry> evicted;
 
-            return new Lock();
+        try {
+            T data = this.data;
+            assert (data != null);
+
+            // A revoked secret is about to be disposed anyway.
+            evicted = this.isRevoked() ? List.of() : this.release(data);
+        } finally {
+            this.data = null;
+            this.transition(IDLE);
         }
+
+        // Other secrets must only be cooled after this secret has become idle again.
+        WarmCache.cool(evicted);
     }
 
-    void dispose(@Nullable Runnable onDispose) {
-        synchronized (this.disposeLock) {
-            if (this.isDisposed) return;
+    /*
+     * Returns the start time for a measurement, or 0 if this secret is not
+     * measured.
+     */
+    private long startMeasurement() {
+        return (this.metrics != null) ? System.nanoTime() : 0L;
+    }
+
+    private Lock acquired(Lock lock, long start, boolean isCold) {
+        if (this.metrics != null) this.metrics.onAcquire(System.nanoTime() - start, isCold);
+        return lock;
+    }
+
+    private void released(long start) {
+        if (this.metrics != null) this.metrics.onRelease(System.nanoTime() - start);
+    }
+
+    /**
+     * {@return whether this secret is currently held by a lock}
+     *
+     * <p>Acquiring another lock for a held secret is cheap since its data does
+     * not have to be read from storage.</p>
+     */
+    boolean isHeld() {
+        return this.state.get() > 0;
+    }
+
+    /**
+     * {@return whether this secret has been revoked}
+     *
+     * <p>A revoked secret can no longer be used, and is disposed in the
+     * background.</p>
+     */
+    boolean isRevoked() {
+        return this.epoch.get() != this.createdEpoch;
+    }
+
+    private void transition(int state) {
+        this.state.set(state);
+
+        if (this.waiters.get() > 0) {
+            this.transitionLock.lock();
 
             try {
-                this.storage.dispose();
+                this.transitioned.signalAll();
             } finally {
-                this.isDisposed = true;
-                Objects.requireNonNullElse(onDispose, this.onDispose).run();
+                this.transitionLock.unlock();
+            }
+        }
+    }
+
+    private void awaitTransition() {
+        this.waiters.incrementAndGet();
+        this.transitionLock.lock();
+
+        try {
+            int state;
+
+            while ((state = this.state.get()) == LOADING || state == BUSY) {
+                this.transitioned.awaitUninterruptibly();
             }
+        } finally {
+            this.transitionLock.unlock();
+            this.waiters.decrementAndGet();
+        }
+    }
+
+    /*
+     * Waits until the current transient state has been left, or the given time
+     * has elapsed. Returns the remaining time.
+     */
+    private long awaitTransitionNanos(long nanos) throws InterruptedException {
+        this.transitionLock.lockInterruptibly();
+        this.waiters.incrementAndGet();
+
+        try {
+            int state;
+
+            while ((state = this.state.get()) == LOADING || state == BUSY) {
+                if (nanos <= 0) return nanos;
+                nanos = this.transitioned.awaitNanos(nanos);
+            }
+
+            return nanos;
+        } finally {
+            this.waiters.decrementAndGet();
+            this.transitionLock.unlock();
+        }
+    }
+
+    private T readFromWarm(WarmCache.Entry warm) {
+        assert (this.warmCache != null);
+
+        this.warmCache.remove(warm);
+        this.warm = null;
+        this.isRetained = warm.isStored;
+
+        ByteBuffer plaintext = warm.plaintext;
+
+        try {
+            Serializer<T> serializer = this.spec.getSerializer();
+            int size = plaintext.remaining();
+            long start = this.startMeasurement();
+
+            if (serializer instanceof BufferSerializer<T> bufferSerializer) return this.deserialized(bufferSerializer.deserialize(plaintext.duplicate()), start, size);
+
+            byte[] bytes = new byte[size];
+
+            try {
+                plaintext.get(plaintext.position(), bytes);
+                return this.deserialized(serializer.deserialize(bytes), start, size);
+            } finally {
+                Arrays.fill(bytes, (byte) 0);
+            }
+        } finally {
+            this.scratchBuffers.release(plaintext);
+        }
+    }
+
+    /*
+     * Serializes the given value into a scratch buffer for the warm cache. The
+     * returned buffer is flipped and ready to be written to storage.
+     */
+    private ByteBuffer serializeWarm(T value) {
+        Serializer<T> serializer = this.spec.getSerializer();
+
+        if (serializer instanceof BufferSerializer<T> bufferSerializer) {
+            ByteBuffer buffer = this.scratchBuffers.acquire(bufferSerializer.sizeHint(value));
+
+            try {
+                long start = this.startMeasurement();
+                bufferSerializer.serialize(value, buffer);
+                this.serialized(start, buffer.position());
+            } catch (RuntimeException | Error e) {
+                this.scratchBuffers.release(buffer);
+                throw e;
+            }
+
+            return buffer.flip();
+        }
+
+        long start = this.startMeasurement();
+        byte[] bytes = serializer.serialize(value);
+        this.serialized(start, bytes.length);
+
+        try {
+            return this.scratchBuffers.acquire(bytes.length).put(bytes).flip();
+        } finally {
+            Arrays.fill(bytes, (byte) 0);
+        }
+    }
+
+    /*
+     * Releases the data of this secret into the warm cache if it fits, or into
+     * storage otherwise. Returns the entries that have been evicted from the
+     * cache to make room for this secret.
+     */
+    private List<WarmCache.Entry> release(T value) {
+        // If the secret has not been modified and the storage kept its data, there is nothing to write back.
+        boolean isStored = !this.isDirty && this.isRetained;
+        WarmCache warmCache = this.warmCache;
+
+        if (warmCache == null) {
+            if (!isStored) this.writeToStorage(value);
+            return List.of();
+        }
+
+        ByteBuffer plaintext = this.serializeWarm(value);
+
+        if (!warmCache.fits(plaintext.remaining())) {
+            try {
+                if (!isStored) this.write(plaintext);
+            } finally {
+                this.scratchBuffers.release(plaintext);
+            }
+
+            return List.of();
+        }
+
+        this.warm = warmCache.createEntry(this, plaintext, isStored);
+        return warmCache.add(this.warm);
+    }
+
+    /**
+     * Writes the cached plaintext of this secret to storage and zeroes it, if
+     * the given entry is still current.
+     *
+     * <p>If writing to storage fails, the plaintext is kept since it is the only
+     * copy of the secret's data. It is then consumed by the next acquisition,
+     * or zeroed when the secret is disposed.</p>
+     *
+     * @param warm  the entry that has been evicted from the warm cache
+     */
+    void cool(WarmCache.Entry warm) {
+        // If the secret is not idle, the entry has either been consumed already or will be consumed by the loader.
+        if (!this.state.compareAndSet(IDLE, BUSY)) return;
+
+        try {
+            // The secret may have been re-acquired and released since the entry was evicted.
+            if (this.warm != warm) return;
+
+            // Write a duplicate to keep the plaintext intact in case the write fails.
+            if (!warm.isStored) this.write(warm.plaintext.duplicate());
+
+            this.warm = null;
+            this.scratchBuffers.release(warm.plaintext);
+        } finally {
+            this.transition(IDLE);
+        }
+    }
+
+    private T readFromStorage() {
+        Serializer<T> serializer = this.spec.getSerializer();
+        int size = this.storage.size();
+
+        if (serializer instanceof BufferSerializer<T> bufferSerializer) {
+            ByteBuffer buffer = this.scratchBuffers.acquire(size);
+
+            try {
+                this.isRetained = this.peek(buffer, size);
+
+                long start = this.startMeasurement();
+                return this.deserialized(bufferSerializer.deserialize(buffer.flip()), start, size);
+            } finally {
+                this.scratchBuffers.release(buffer);
+            }
+        }
+
+        byte[] bytes = new byte[size];
+
+        try {
+            this.isRetained = this.peek(ByteBuffer.wrap(bytes), size);
+
+            long start = this.startMeasurement();
+            return this.deserialized(serializer.deserialize(bytes), start, size);
+        } finally {
+            Arrays.fill(bytes, (byte) 0);
+        }
+    }
+
+    /**
+     * Serializes the given value and writes it to storage.
+     *
+     * @return  the size of the serialized value
+     */
+    private int writeToStorage(T value) {
+        Serializer<T> serializer = this.spec.getSerializer();
+
+        if (serializer instanceof BufferSerializer<T> bufferSerializer) {
+            ByteBuffer buffer = this.scratchBuffers.acquire(bufferSerializer.sizeHint(value));
+
+            try {
+                long start = this.startMeasurement();
+                bufferSerializer.serialize(value, buffer);
+
+                int size = buffer.position();
+                this.serialized(start, size);
+
+                this.write(buffer.flip());
+                return size;
+            } finally {
+                this.scratchBuffers.release(buffer);
+            }
+        }
+
+        long start = this.startMeasurement();
+        byte[] bytes = serializer.serialize(value);
+        this.serialized(start, bytes.length);
+
+        try {
+            this.write(ByteBuffer.wrap(bytes));
+            return bytes.length;
+        } finally {
+            Arrays.fill(bytes, (byte) 0);
+        }
+    }
+
+    private boolean peek(ByteBuffer buffer, int size) {
+        StashMetrics metrics = this.metrics;
+        if (metrics == null) return this.storage.peek(buffer);
+
+        long start = System.nanoTime();
+        boolean isRetained = this.storage.peek(buffer);
+        metrics.onDecrypt(System.nanoTime() - start, size);
+
+        return isRetained;
+    }
+
+    private void write(ByteBuffer plaintext) {
+        StashMetrics metrics = this.metrics;
+
+        if (metrics == null) {
+            this.storage.write(plaintext);
+            return;
+        }
+
+        int size = plaintext.remaining();
+        long start = System.nanoTime();
+        this.storage.write(plaintext);
+        metrics.onEncrypt(System.nanoTime() - start, size);
+    }
+
+    private T deserialized(T value, long start, int size) {
+        if (this.metrics != null) this.metrics.onDeserialize(System.nanoTime() - start, size);
+        return value;
+    }
+
+    private void serialized(long start, int size) {
+        if (this.metrics != null) this.metrics.onSerialize(System.nanoTime() - start, size);
+    }
+
+    void dispose() {
+        for (;;) {
+            int state = this.state.get();
+            if (state == DISPOSED) return;
+
+            if (state == LOADING || state == BUSY) {
+                this.awaitTransition();
+            } else if (this.state.compareAndSet(state, DISPOSED)) {
+                break;
+            }
+        }
+
+        this.transition(DISPOSED);
+
+        try {
+            if (this.warm != null) {
+                assert (this.warmCache != null);
+
+                this.warmCache.remove(this.warm);
+                this.scratchBuffers.release(this.warm.plaintext);
+                this.warm = null;
+            }
+
+            this.storage.dispose();
+        } finally {
+            this.data = null;
+            this.onDispose.run();
         }
     }
 
@@ -129,10 +808,15 @@ public final class Secret<T> {
      */
     public final class Lock implements AutoCloseable {
 
-        private final Object releaseLock = new Object();
-        private boolean isReleased;
+        private final boolean isReadOnly;
+
+        // Accessed via IS_RELEASED.
+        @SuppressWarnings("unused")
+        private volatile boolean isReleased;
 
-        private Lock() {}
+        private Lock(boolean isReadOnly) {
+            this.isReadOnly = isReadOnly;
+        }
 
         /**
          * {@link #release() Releases} this lock.
@@ -150,20 +834,22 @@ public final class Secret<T> {
          * @since   0.1.0
          */
         public void dispose() {
-            Secret.this.dispose(null);
+            Secret.this.dispose();
         }
 
         /**
-         * {@return the value of the secret}
+         * {@return the value of the secret, or an empty {@code Optional} if the
+         * secret has been disposed or revoked}
+         *
+         * <p>Modifications of the value are only guaranteed to be written to
+         * storage if they are made via {@link #set(Object)}. If the value is
+         * mutable, it must not be modified in place.</p>
          *
          * @since   0.1.0
          */
         public Optional<T> get() {
-            synchronized (Secret.this.disposeLock) {
-                synchronized (this.releaseLock) {
-                    return Optional.ofNullable(Secret.this.data);
-                }
-            }
+            if (Secret.this.isRevoked()) return Optional.empty();
+            return Optional.ofNullable(Secret.this.data);
         }
 
         /**
@@ -171,19 +857,25 @@ public final class Secret<T> {
          *
          * @param value the value for the secret
          *
-         * @throws IllegalStateException    if the secret has been disposed, or this lock has been released
+         * @throws IllegalStateException    if the secret has been disposed or revoked, or this lock has been released or is {@link Secret#acquireReadOnly() read-only}
          *
          * @since   0.1.0
          */
         public void set(T value) {
-            synchronized (Secret.this.disposeLock) {
-                if (Secret.this.isDisposed) throw new IllegalStateException("Cannot modify a disposed secret");
+            Objects.requireNonNull(value);
 
-                synchronized (this.releaseLock) {
-                    if (this.isReleased) throw new IllegalStateException("Cannot use a released lock to access a secret");
+            if (Secret.this.state.get() == DISPOSED) throw new IllegalStateException("Cannot modify a disposed secret");
+            if (Secret.this.isRevoked()) throw new IllegalStateException("Cannot modify a revoked secret");
+            if (this.isReleased) throw new IllegalStateException("Cannot use a released lock to access a secret");
+            if (this.isReadOnly) throw new IllegalStateException("Cannot use a read-only lock to modify a secret");
 
-                    Secret.this.data = Objects.requireNonNull(value);
-                }
+            Secret.this.isDirty = true;
+            Secret.this.data = value;
+
+            // Make sure that the value does not outlive a concurrent disposal.
+            if (Secret.this.state.get() == DISPOSED) {
+                Secret.this.data = null;
+                throw new IllegalStateException("Cannot modify a disposed secret");
             }
         }
 
@@ -197,16 +889,17 @@ public final class Secret<T> {
          * @since   0.1.0
          */
         public boolean setIfAcquired(Supplier<T> supplier) {
-            synchronized (Secret.this.disposeLock) {
-                if (Secret.this.isDisposed) return false;
+            if (Secret.this.state.get() == DISPOSED || Secret.this.isRevoked() || this.isReleased || this.isReadOnly) return false;
 
-                synchronized (this.releaseLock) {
-                    if (this.isReleased) return false;
+            Secret.this.isDirty = true;
+            Secret.this.data = supplier.get();
 
-                    Secret.this.data = supplier.get();
-                    return true;
-                }
+            if (Secret.this.state.get() == DISPOSED) {
+                Secret.this.data = null;
+                return false;
             }
+
+            return true;
         }
 
         /**
@@ -216,37 +909,61 @@ public final class Secret<T> {
          * the secret has already been disposed.</p>
          *
          * <p>If this lock is the last lock holding onto the secret, the secret
-         * is deterministically released into storage again.</p>
+         * is deterministically released into storage (or the warm cache)
+         * again.</p>
          *
          * @since   0.1.0
          */
         public void release() {
-            synchronized (Secret.this.disposeLock) {
-                if (Secret.this.isDisposed) return;
-
-                synchronized (this.releaseLock) {
-                    if (this.isReleased) return;
-                    this.isReleased = true;
-
-                    long locks = Secret.this.locks.decrementAndGet();
-                    assert (locks >= 0);
-                    assert (Secret.this.data != null);
-
-                    if (locks == 0) {
-                        try {
-                            byte[] bytes = Secret.this.spec.getSerializer().serialize(Secret.this.data);
-
-                            try {
-                                Secret.this.storage.write(bytes);
-                            } finally {
-                                Arrays.fill(bytes, (byte) 0);
-                            }
-                        } finally {
-                            Secret.this.data = null;
-                        }
-                    }
-                }
+            if (!IS_RELEASED.compareAndSet(this, false, true)) return;
+
+            long start = Secret.this.startMeasurement();
+            if (!Secret.this.tryReleaseShared()) Secret.this.releaseLast();
+
+            Secret.this.released(start);
+        }
+
+        /**
+         * Asynchronously releases this lock.
+         *
+         * <p>If this lock is the last lock holding onto the secret, releasing
+         * the secret into storage is performed by the
+         * {@link Stash.Builder#withCryptoExecutor(java.util.concurrent.Executor, int) crypto executor}
+         * of the stash. Otherwise, this lock is released immediately. A lock
+         * cannot be used anymore once this method returns.</p>
+         *
+         * <p>Since a secret must always be released eventually, releasing is
+         * never rejected. If the crypto executor has too many pending tasks, the
+         * secret is released by the calling thread instead.</p>
+         *
+         * @return  a future that is completed once the lock has been released
+         *
+         * @since   0.2.0
+         */
+        public CompletableFuture<Void> releaseAsync() {
+            if (!IS_RELEASED.compareAndSet(this, false, true)) return CompletableFuture.completedFuture(null);
+
+            long start = Secret.this.startMeasurement();
+
+            if (Secret.this.tryReleaseShared()) {
+                Secret.this.released(start);
+                return CompletableFuture.completedFuture(null);
             }
+
+            CompletableFuture<Void> future = new CompletableFuture<>();
+
+            Runnable task = () -> {
+                try {
+                    Secret.this.releaseLast();
+                    Secret.this.released(start);
+                    future.complete(null);
+                } catch (RuntimeException | Error e) {
+                    future.completeExceptionally(e);
+                }
+            };
+
+            if (!Secret.this.cryptoExecutor.tryExecute(task)) task.run();
+            return future;
         }
 
     }
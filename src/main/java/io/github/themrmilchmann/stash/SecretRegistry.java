@@ -0,0 +1,210 @@
+/*
+ * Copyright (c) 2022 Leon Linhart
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package io.github.themrmilchmann.stash;
+
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+/**
+ * A concurrent registry that tracks the live secrets of a {@link Stash}.
+ *
+ * <p>Secrets are spread over a number of shards to reduce contention between
+ * threads that register secrets concurrently. Each shard is an intrusive,
+ * doubly-linked list that is guarded by a lock of its own. Thus, registering
+ * and removing a secret are constant-time operations.</p>
+ *
+ * <p>All secrets can be {@link #detach() detached} from the registry at once by
+ * replacing the lists of all shards. The detached lists are no longer modified
+ * and may be traversed without holding any lock.</p>
+ *
+ * @author  Leon Linhart
+ */
+final class SecretRegistry {
+
+    private static final int SHARD_COUNT = Integer.highestOneBit(Math.min(Runtime.getRuntime().availableProcessors(), 64) * 2 - 1);
+
+    private final Shard[] shards;
+
+    SecretRegistry() {
+        this.shards = new Shard[SHARD_COUNT];
+        for (int i = 0; i < SHARD_COUNT; i++) this.shards[i] = new Shard();
+    }
+
+    /**
+     * Creates a new secret using the given {@code factory} and registers it.
+     *
+     * <p>The factory receives the callback that removes the secret from this
+     * registry. If the factory fails, nothing is registered.</p>
+     *
+     * @return  the new secret
+     */
+    <T> Secret<T> register(Function<Runnable, Secret<T>> factory) {
+        Shard shard = this.shards[ThreadLocalRandom.current().nextInt() & (SHARD_COUNT - 1)];
+        Node node = new Node();
+
+        Secret<T> secret = factory.apply(() -> shard.unlink(node));
+        node.secret = secret;
+        shard.link(node);
+
+        return secret;
+    }
+
+    /**
+     * Removes all secrets from this registry.
+     *
+     * <p>Secrets that are registered concurrently may or may not be included
+     * in the result.</p>
+     *
+     * @return  the secrets that have been removed
+     */
+    List<Secret<?>> drain() {
+        return this.detach().collect();
+    }
+
+    /**
+     * Removes all secrets from this registry without traversing them.
+     *
+     * <p>The cost of this operation only depends on the number of shards.
+     * Secrets that are registered concurrently may or may not be included in
+     * the result.</p>
+     *
+     * @return  the removed secrets
+     */
+    Detached detach() {
+        Segment[] segments = new Segment[this.shards.length];
+        for (int i = 0; i < segments.length; i++) segments[i] = this.shards[i].detach();
+
+        return new Detached(segments);
+    }
+
+    /**
+     * The secrets that have been {@link #detach() detached} from a registry.
+     */
+    static final class Detached {
+
+        private final Segment[] segments;
+
+        private Detached(Segment[] segments) {
+            this.segments = segments;
+        }
+
+        /**
+         * {@return the detached secrets}
+         */
+        List<Secret<?>> collect() {
+            List<Secret<?>> secrets = new ArrayList<>();
+
+            for (Segment segment : this.segments) {
+                for (Node node = segment.head; node != null; node = node.next) {
+                    assert (node.secret != null);
+                    secrets.add(node.secret);
+                }
+            }
+
+            return secrets;
+        }
+
+    }
+
+    private static final class Shard {
+
+        private final ReentrantLock lock = new ReentrantLock();
+
+        private Segment segment = new Segment();
+
+        void link(Node node) {
+            this.lock.lock();
+
+            try {
+                Segment segment = this.segment;
+
+                node.segment = segment;
+                node.next = segment.head;
+                if (segment.head != null) segment.head.prev = node;
+
+                segment.head = node;
+            } finally {
+                this.lock.unlock();
+            }
+        }
+
+        void unlink(Node node) {
+            this.lock.lock();
+
+            try {
+                Segment segment = this.segment;
+
+                // Detached segments must not be modified anymore.
+                if (node.segment != segment) return;
+
+                if (node.prev != null) {
+                    node.prev.next = node.next;
+                } else {
+                    segment.head = node.next;
+                }
+
+                if (node.next != null) node.next.prev = node.prev;
+
+                node.segment = null;
+                node.prev = null;
+                node.next = null;
+            } finally {
+                this.lock.unlock();
+            }
+        }
+
+        Segment detach() {
+            this.lock.lock();
+
+            try {
+                Segment segment = this.segment;
+                this.segment = new Segment();
+
+                return segment;
+            } finally {
+                this.lock.unlock();
+            }
+        }
+
+    }
+
+    private static final class Segment {
+
+        @Nullable Node head;
+
+    }
+
+    private static final class Node {
+
+        // Guarded by the lock of the shard.
+        @Nullable Segment segment;
+        @Nullable Node prev, next;
+
+        @Nullable Secret<?> secret;
+
+    }
+
+}
\ No newline at end of file
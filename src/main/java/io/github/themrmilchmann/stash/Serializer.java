@@ -25,6 +25,9 @@ package io.github.themrmilchmann.stash;
  * A {@code Serializer} is responsible for converting between arbitrary data of
  * type {@code T} and a serialized {@code byte[]} representation.
  *
+ * <p>Implementations should consider implementing {@link BufferSerializer}
+ * instead to avoid intermediate arrays.</p>
+ *
  * @param <T>   the type of data processed by this serializer
  *
  * @since   0.1.0
@@ -34,12 +37,10 @@ package io.github.themrmilchmann.stash;
 public interface Serializer<T> {
 
     /*
-     * TODO
-     *  The idea of doing this via byte[] is potentially unsafe as the GC could
-     *  hit a safe-point and move objects during de-/serialization. In this
-     *  case, the old data may not be properly cleared. To prevent this, it
-     *  might make sense to use an off-heap buffer instead. MemorySegments could
-     *  be useful here. (ByteBuffers are impractical due to their lifetime.)
+     * The idea of doing this via byte[] is potentially unsafe as the GC could
+     * hit a safe-point and move objects during de-/serialization. In this case,
+     * the old data may not be properly cleared. BufferSerializer addresses
+     * this by (de-)serializing from and to caller-provided (direct) buffers.
      */
 
     /**
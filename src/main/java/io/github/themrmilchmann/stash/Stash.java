@@ -21,19 +21,41 @@
  */
 package io.github.themrmilchmann.stash;
 
+import io.github.themrmilchmann.stash.internal.BufferedSecureRandom;
+import io.github.themrmilchmann.stash.internal.PrefetchedSecureRandom;
+import io.github.themrmilchmann.stash.internal.ScratchBufferPool;
+import io.github.themrmilchmann.stash.internal.platform.universal.AesGcmStorageFactory;
+import io.github.themrmilchmann.stash.internal.platform.universal.AlgorithmSelection;
+import io.github.themrmilchmann.stash.internal.platform.universal.EnvelopeStorageFactory;
 import io.github.themrmilchmann.stash.internal.platform.universal.UniversalStorageFactory;
 
 import javax.annotation.Nullable;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.time.Duration;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 /**
  * A {@code Stash} is a container that manages {@link Secret secrets}.
  *
+ * <p>A stash should be {@link #close() closed} once it is no longer used to
+ * dispose all of its secrets and to release the resources of its storage.</p>
+ *
  * @since   0.1.0
  *
  * @author  Leon Linhart
  */
-public final class Stash {
+public final class Stash implements AutoCloseable {
 
     /**
      * {@return a {@link Builder}}
@@ -44,26 +66,297 @@ public final class Stash {
         return new Builder();
     }
 
-    private final List<Secret<?>> secrets = new ArrayList<>();
+    /*
+     * A key and a nonce for the universal storage amount to 44 bytes. Thus,
+     * the buffer holds enough entropy for roughly a hundred writes, which
+     * should be sufficient to absorb bursts.
+     */
+    private static final int ENTROPY_BUFFER_SIZE = 4096;
+
+    /*
+     * Disposing a secret typically takes a few hundred nanoseconds. Batches of
+     * this size are large enough to amortize the overhead of forking a task.
+     */
+    private static final int WIPE_BATCH_SIZE = 1024;
+
+    /*
+     * Encrypting a secret typically takes a few microseconds. Thus, creating
+     * secrets is forked into considerably smaller batches than disposing them.
+     */
+    private static final int PUT_BATCH_SIZE = 64;
+
+    /*
+     * The amount of randomness that is prefetched per secret when putting
+     * secrets in bulk. This is enough for a 256-bit key and a 96-bit nonce.
+     */
+    private static final int ENTROPY_PER_SECRET = 44;
+
+    /*
+     * Asynchronous operations are only rejected when the crypto executor has
+     * fallen far behind. By default, this is a few milliseconds of backlog per
+     * core.
+     */
+    private static final int DEFAULT_MAX_PENDING_CRYPTO_TASKS = 256 * Runtime.getRuntime().availableProcessors();
+
+    private final SecretRegistry secrets = new SecretRegistry();
+    private final Epoch epoch = new Epoch();
+    private final ScratchBufferPool scratchBuffers = new ScratchBufferPool();
+
+    /*
+     * Puts hold the read lock while they create storages. This ensures that
+     * the storage factory is not closed while it is in use.
+     */
+    private final ReentrantReadWriteLock closeLock = new ReentrantReadWriteLock();
+    private volatile boolean isClosed;
+
+    /*
+     * Revoked secrets are disposed in the background. Closing the stash waits
+     * for these disposals since they still use the storage factory.
+     */
+    private final Set<CompletableFuture<Void>> revocations = ConcurrentHashMap.newKeySet();
 
     private final StorageFactory<?> storageFactory;
+    private final boolean isStorageFactoryOwned;
+    private final SecureRandom random;
 
-    private Stash(Builder builder, StorageFactory<?> storageFactory) {
+    @Nullable private final WarmCache warmCache;
+    private final CryptoExecutor cryptoExecutor;
+    @Nullable private final StashMetrics metrics;
+    @Nullable private final Thread shutdownHook;
+
+    private Stash(Builder builder, StorageFactory<?> storageFactory, SecureRandom random) {
         this.storageFactory = storageFactory;
+        this.isStorageFactoryOwned = (builder.storageFactory == null);
+        this.random = random;
+        this.warmCache = (builder.keepWarmGracePeriod != null) ? new WarmCache(builder.keepWarmGracePeriod.toNanos(), builder.keepWarmMaxBytes) : null;
+        this.cryptoExecutor = (builder.cryptoExecutor != null)
+            ? new CryptoExecutor(builder.cryptoExecutor, builder.maxPendingCryptoTasks)
+            : new CryptoExecutor(ForkJoinPool.commonPool(), DEFAULT_MAX_PENDING_CRYPTO_TASKS);
+
+        // Operations are not measured at all if no metrics have been set.
+        this.metrics = (builder.metrics != StashMetrics.noop()) ? builder.metrics : null;
+
+        if (builder.shutdownWipeTimeout != null) {
+            long timeoutNanos = builder.shutdownWipeTimeout.toNanos();
+
+            this.shutdownHook = new Thread(() -> this.close(timeoutNanos), "Stash Shutdown Wipe");
+            Runtime.getRuntime().addShutdownHook(this.shutdownHook);
+        } else {
+            this.shutdownHook = null;
+        }
+    }
+
+    /**
+     * Rotates the master key of this stash.
+     *
+     * <p>Secrets are re-encrypted with the new master key when they are
+     * released the next time. Previous master keys are destroyed once no
+     * secret depends on them anymore.</p>
+     *
+     * @throws IllegalStateException    if this stash does not use {@link Builder#withEnvelopeEncryption(boolean) envelope encryption}
+     *
+     * @since   0.2.0
+     */
+    public void rotateMasterKey() {
+        if (!(this.storageFactory instanceof EnvelopeStorageFactory envelopeStorageFactory)) {
+            throw new IllegalStateException("Stash does not use envelope encryption");
+        }
+
+        envelopeStorageFactory.rotate();
+    }
+
+    /**
+     * Revokes all secrets in this stash.
+     *
+     * <p>Revocation takes effect immediately, and its cost does not depend on
+     * the number of secrets in this stash. Revoked secrets can no longer be
+     * acquired, and all of their outstanding locks become unusable: reading
+     * from them yields no value, and they cannot be used to modify a secret
+     * anymore. Releasing a lock of a revoked secret does not write its value
+     * back to storage.</p>
+     *
+     * <p>The revoked secrets are disposed in the background using the
+     * {@link ForkJoinPool#commonPool() common pool}. Secrets that are put into
+     * this stash afterwards are not affected. {@link #close() Closing} the
+     * stash waits for the disposal of revoked secrets to finish. If this stash
+     * has already been closed, the returned future is already completed.</p>
+     *
+     * @return  a future that completes once all revoked secrets have been
+     *          disposed
+     *
+     * @since   0.2.0
+     */
+    public CompletableFuture<Void> revokeAll() {
+        this.epoch.advance();
+
+        this.closeLock.readLock().lock();
+
+        try {
+            // The secrets of a closed stash are disposed by close() instead.
+            if (this.isClosed) return CompletableFuture.completedFuture(null);
+
+            SecretRegistry.Detached detached = this.secrets.detach();
+
+            CompletableFuture<Void> revocation = CompletableFuture.runAsync(() -> {
+                List<Secret<?>> secrets = detached.collect();
+
+                WipeTask task = new WipeTask(secrets, 0, secrets.size(), new AtomicReference<>());
+                task.invoke();
+
+                RuntimeException failure = task.failure.get();
+                if (failure != null) throw failure;
+            }, ForkJoinPool.commonPool());
+
+            this.revocations.add(revocation);
+            revocation.whenComplete((result, failure) -> this.revocations.remove(revocation));
+
+            // Cancelling the returned future must not make close() skip a disposal that is still running.
+            return revocation.copy();
+        } finally {
+            this.closeLock.readLock().unlock();
+        }
     }
 
     /**
      * Clears this stash by {@link Secret.Lock#dispose() disposing} all secrets.
      *
+     * <p>Large numbers of secrets are disposed in parallel using the
+     * {@link ForkJoinPool#commonPool() common pool}. This method returns once
+     * all secrets have been disposed.</p>
+     *
+     * <p>Secrets that are put into this stash concurrently may or may not be
+     * disposed.</p>
+     *
      * @since   0.1.0
      */
     public void clear() {
-        for (Iterator<Secret<?>> itr = this.secrets.iterator(); itr.hasNext(); ) {
-            Secret<?> secret = itr.next();
-            secret.dispose(itr::remove);
+        this.wipe(Long.MAX_VALUE);
+    }
+
+    /**
+     * Closes this stash.
+     *
+     * <p>Closing a stash {@link #clear() clears} it and releases the resources
+     * of its storage. If the storage has been configured using
+     * {@link Builder#withStorageFactory(StorageFactory)}, the factory is not
+     * closed and remains usable. No secrets can be put into a closed stash.</p>
+     *
+     * <p>Closing a stash that has already been closed has no effect.</p>
+     *
+     * @since   0.2.0
+     */
+    @Override
+    public void close() {
+        if (this.shutdownHook != null) {
+            try {
+                Runtime.getRuntime().removeShutdownHook(this.shutdownHook);
+            } catch (IllegalStateException e) {
+                // The JVM is shutting down, and the hook has already been started.
+            }
+        }
+
+        this.close(Long.MAX_VALUE);
+    }
+
+    private void close(long timeoutNanos) {
+        long start = System.nanoTime();
+
+        this.closeLock.writeLock().lock();
+
+        try {
+            if (this.isClosed) return;
+            this.isClosed = true;
+        } finally {
+            this.closeLock.writeLock().unlock();
+        }
+
+        /*
+         * If disposing the secrets did not finish in time, some storages may
+         * still be in use. Thus, the storage factory is only closed after all
+         * secrets (including revoked ones) have been disposed.
+         */
+        boolean isWiped = this.wipe(timeoutNanos) && this.awaitRevocations(start, timeoutNanos);
+
+        if (isWiped && this.isStorageFactoryOwned && this.storageFactory instanceof AutoCloseable closeable) {
+            try {
+                closeable.close();
+            } catch (RuntimeException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new IllegalStateException("Failed to close storage factory", e);
+            }
         }
     }
 
+    /**
+     * Disposes all secrets in this stash.
+     *
+     * @param timeoutNanos  the maximum time to wait for the disposal to finish
+     *
+     * @return  whether all secrets have been disposed in time
+     */
+    private boolean wipe(long timeoutNanos) {
+        List<Secret<?>> secrets = this.secrets.drain();
+
+        WipeTask task = new WipeTask(secrets, 0, secrets.size(), new AtomicReference<>());
+
+        if (secrets.size() <= WIPE_BATCH_SIZE || timeoutNanos == Long.MAX_VALUE) {
+            // If the current thread is a worker of the pool, the task is executed in the pool directly.
+            task.invoke();
+        } else {
+            ForkJoinPool.commonPool().execute(task);
+
+            try {
+                task.get(timeoutNanos, TimeUnit.NANOSECONDS);
+            } catch (TimeoutException e) {
+                return false;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            } catch (ExecutionException e) {
+                // WipeTask never completes exceptionally.
+                throw new IllegalStateException(e);
+            }
+        }
+
+        RuntimeException failure = task.failure.get();
+        if (failure != null) throw failure;
+
+        return true;
+    }
+
+    /**
+     * Waits for the disposal of revoked secrets to finish.
+     *
+     * <p>Failures to dispose revoked secrets are reported by the futures
+     * returned from {@link #revokeAll()} and are ignored here.</p>
+     *
+     * @param start         the time at which the timeout started
+     * @param timeoutNanos  the maximum time to wait since {@code start}
+     *
+     * @return  whether all revoked secrets have been disposed in time
+     */
+    private boolean awaitRevocations(long start, long timeoutNanos) {
+        for (CompletableFuture<Void> revocation : this.revocations) {
+            try {
+                if (timeoutNanos == Long.MAX_VALUE) {
+                    revocation.get();
+                } else {
+                    revocation.get(timeoutNanos - (System.nanoTime() - start), TimeUnit.NANOSECONDS);
+                }
+            } catch (TimeoutException e) {
+                return false;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            } catch (ExecutionException e) {
+                // The failure has been reported to the caller of revokeAll().
+            }
+        }
+
+        return true;
+    }
+
     /**
      * Creates a new {@link Secret} and puts it into this stash. The secret is
      * initialized with the given {@code value} and behaves as specified by the
@@ -75,20 +368,202 @@ public final class Stash {
      *
      * @return  the new secret
      *
+     * @throws IllegalStateException    if this stash has been {@link #close() closed}
+     *
      * @since   0.1.0
      */
     public <T> Secret<T> put(SecretSpec<T> spec, T value) {
         Objects.requireNonNull(spec);
         Objects.requireNonNull(value);
 
-        Storage storage = this.storageFactory.create();
-        int index = this.secrets.size();
-        Secret<T> secret = new Secret<>(spec, storage, () -> this.secrets.remove(index), value);
-        this.secrets.add(secret);
+        this.closeLock.readLock().lock();
+
+        try {
+            if (this.isClosed) throw new IllegalStateException("Stash is closed");
+            return this.create(spec, value, this.random);
+        } finally {
+            this.closeLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Creates new {@link Secret secrets} and puts them into this stash. Each
+     * secret is initialized with the respective value of the given
+     * {@code values} and behaves as specified by the given {@code spec}.
+     *
+     * <p>Putting many secrets at once is considerably faster than putting them
+     * one at a time. The randomness that is required to encrypt the secrets is
+     * drawn from the entropy source in bulk, and large batches are encrypted
+     * in parallel using the {@link ForkJoinPool#commonPool() common pool}.</p>
+     *
+     * <p>If any secret cannot be created, the secrets that have been created
+     * already are disposed again before the exception is rethrown.</p>
+     *
+     * @param <T>       the type of the secrets
+     * @param spec      the specification for the secrets
+     * @param values    the initial values for the secrets
+     *
+     * @return  the new secrets, in the order of the given values
+     *
+     * @throws IllegalStateException    if this stash has been {@link #close() closed}
+     *
+     * @since   0.2.0
+     */
+    public <T> List<Secret<T>> putAll(SecretSpec<T> spec, List<? extends T> values) {
+        Objects.requireNonNull(spec);
+        List<? extends T> copy = List.copyOf(values);
+
+        this.closeLock.readLock().lock();
+
+        try {
+            if (this.isClosed) throw new IllegalStateException("Stash is closed");
+
+            @SuppressWarnings({ "rawtypes", "unchecked" })
+            Secret<T>[] secrets = new Secret[copy.size()];
+            PutTask<T> task = new PutTask<>(this, spec, copy, secrets, 0, secrets.length, new AtomicReference<>());
+
+            // If the current thread is a worker of the pool, the task is executed in the pool directly.
+            task.invoke();
+
+            RuntimeException failure = task.failure.get();
+
+            if (failure != null) {
+                for (Secret<T> secret : secrets) {
+                    if (secret == null) continue;
+
+                    try {
+                        secret.dispose();
+                    } catch (RuntimeException e) {
+                        failure.addSuppressed(e);
+                    }
+                }
+
+                throw failure;
+            }
+
+            return List.of(secrets);
+        } finally {
+            this.closeLock.readLock().unlock();
+        }
+    }
+
+    private <T> Secret<T> create(SecretSpec<T> spec, T value, SecureRandom random) {
+        long start = (this.metrics != null) ? System.nanoTime() : 0L;
+
+        BufferStorage storage = BufferStorage.adapt(this.storageFactory.create(random));
+        Secret<T> secret;
+
+        try {
+            secret = this.secrets.register(onDispose -> new Secret<>(spec, storage, this.scratchBuffers, this.warmCache, this.epoch, this.cryptoExecutor, this.metrics, onDispose, value, start));
+        } catch (RuntimeException | Error e) {
+            storage.dispose();
+            throw e;
+        }
+
+        // If the stash was revoked concurrently, the secret might have been registered after the registry was detached.
+        if (secret.isRevoked()) secret.dispose();
 
         return secret;
     }
 
+    /**
+     * A task that creates a range of secrets, splitting it recursively into
+     * batches that are created in parallel.
+     *
+     * <p>Each batch draws the randomness for all of its secrets from the
+     * entropy source of the stash at once.</p>
+     */
+    @SuppressWarnings("serial")
+    private static final class PutTask<T> extends RecursiveAction {
+
+        private final Stash stash;
+        private final SecretSpec<T> spec;
+        private final List<? extends T> values;
+        private final Secret<T>[] secrets;
+        private final int from, to;
+        private final AtomicReference<RuntimeException> failure;
+
+        PutTask(Stash stash, SecretSpec<T> spec, List<? extends T> values, Secret<T>[] secrets, int from, int to, AtomicReference<RuntimeException> failure) {
+            this.stash = stash;
+            this.spec = spec;
+            this.values = values;
+            this.secrets = secrets;
+            this.from = from;
+            this.to = to;
+            this.failure = failure;
+        }
+
+        @Override
+        protected void compute() {
+            if (this.to - this.from > PUT_BATCH_SIZE) {
+                int mid = (this.from + this.to) >>> 1;
+                invokeAll(
+                    new PutTask<>(this.stash, this.spec, this.values, this.secrets, this.from, mid, this.failure),
+                    new PutTask<>(this.stash, this.spec, this.values, this.secrets, mid, this.to, this.failure)
+                );
+
+                return;
+            }
+
+            SecureRandom random = new PrefetchedSecureRandom(this.stash.random, (this.to - this.from) * ENTROPY_PER_SECRET);
+
+            for (int i = this.from; i < this.to; i++) {
+                // Stop early once any batch has failed.
+                if (this.failure.get() != null) return;
+
+                try {
+                    this.secrets[i] = this.stash.create(this.spec, this.values.get(i), random);
+                } catch (RuntimeException e) {
+                    if (!this.failure.compareAndSet(null, e)) this.failure.get().addSuppressed(e);
+                    return;
+                }
+            }
+        }
+
+    }
+
+    /**
+     * A task that disposes a range of secrets, splitting it recursively into
+     * batches that are disposed in parallel.
+     *
+     * <p>A failure to dispose a secret does not prevent the remaining secrets
+     * from being disposed. Instead, failures are collected and reported once
+     * the task has completed.</p>
+     */
+    @SuppressWarnings("serial")
+    private static final class WipeTask extends RecursiveAction {
+
+        private final List<Secret<?>> secrets;
+        private final int from, to;
+        private final AtomicReference<RuntimeException> failure;
+
+        WipeTask(List<Secret<?>> secrets, int from, int to, AtomicReference<RuntimeException> failure) {
+            this.secrets = secrets;
+            this.from = from;
+            this.to = to;
+            this.failure = failure;
+        }
+
+        @Override
+        protected void compute() {
+            if (this.to - this.from > WIPE_BATCH_SIZE) {
+                int mid = (this.from + this.to) >>> 1;
+                invokeAll(new WipeTask(this.secrets, this.from, mid, this.failure), new WipeTask(this.secrets, mid, this.to, this.failure));
+
+                return;
+            }
+
+            for (int i = this.from; i < this.to; i++) {
+                try {
+                    this.secrets.get(i).dispose();
+                } catch (RuntimeException e) {
+                    if (!this.failure.compareAndSet(null, e)) this.failure.get().addSuppressed(e);
+                }
+            }
+        }
+
+    }
+
     /**
      * A builder for {@link Stash} instances.
      *
@@ -99,6 +574,28 @@ public final class Stash {
         @Nullable
         private StorageFactory<?> storageFactory;
 
+        @Nullable
+        private SecureRandom secureRandom;
+
+        @Nullable
+        private EncryptionAlgorithm encryptionAlgorithm;
+
+        private boolean isEnvelopeEncryptionEnabled;
+
+        @Nullable
+        private Duration keepWarmGracePeriod;
+        private long keepWarmMaxBytes;
+
+        @Nullable
+        private Duration shutdownWipeTimeout;
+
+        @Nullable
+        private Executor cryptoExecutor;
+        private int maxPendingCryptoTasks;
+
+        @Nullable
+        private StashMetrics metrics;
+
         private Builder() {}
 
         /**
@@ -114,13 +611,52 @@ public final class Stash {
          * because it can not offload all sensitive information into protected
          * storage and instead relies on indirection and obscuration.</p>
          *
+         * <p>If no {@link SecureRandom} has been set explicitly, a DRBG is
+         * used as entropy source for the stash.</p>
+         *
+         * @throws IllegalStateException    if more than one of a {@code StorageFactory}, an {@link #withEncryptionAlgorithm(EncryptionAlgorithm) encryption algorithm}, and {@link #withEnvelopeEncryption(boolean) envelope encryption} are configured
+         *
          * @since   0.1.0
          */
         @SuppressWarnings("rawtypes")
         public Stash build() {
             StorageFactory storageFactory = this.storageFactory;
 
-            if (storageFactory == null) {
+            if (storageFactory != null && this.isEnvelopeEncryptionEnabled) {
+                throw new IllegalStateException("Envelope encryption cannot be used with an explicit StorageFactory");
+            }
+
+            if (this.encryptionAlgorithm != null && (storageFactory != null || this.isEnvelopeEncryptionEnabled)) {
+                throw new IllegalStateException("An encryption algorithm cannot be used with an explicit StorageFactory or envelope encryption");
+            }
+
+            SecureRandom secureRandom = this.secureRandom;
+
+            if (secureRandom == null) {
+                try {
+                    secureRandom = SecureRandom.getInstance("DRBG");
+                } catch (NoSuchAlgorithmException e) {
+                    throw new IllegalStateException("Could not create default entropy source", e);
+                }
+            }
+
+            SecureRandom random = new BufferedSecureRandom(secureRandom, ENTROPY_BUFFER_SIZE);
+
+            if (this.isEnvelopeEncryptionEnabled) {
+                EnvelopeStorageFactory envelopeStorageFactory = new EnvelopeStorageFactory(random);
+                if (!envelopeStorageFactory.isSupported()) throw new IllegalStateException("Envelope encryption is not supported");
+
+                storageFactory = envelopeStorageFactory;
+            } else if (this.encryptionAlgorithm != null) {
+                EncryptionAlgorithm algorithm = (this.encryptionAlgorithm == EncryptionAlgorithm.AUTO) ? AlgorithmSelection.fastest() : this.encryptionAlgorithm;
+
+                storageFactory = switch (algorithm) {
+                    case AES_GCM -> new AesGcmStorageFactory();
+                    default -> new UniversalStorageFactory();
+                };
+
+                if (!storageFactory.isSupported()) throw new IllegalStateException(algorithm + " is not supported");
+            } else if (storageFactory == null) {
                 ServiceLoader<StorageFactory> serviceLoader = ServiceLoader.load(StorageFactory.class);
                 Optional<StorageFactory> optStorageFactory = serviceLoader.stream()
                     .map(ServiceLoader.Provider::get)
@@ -137,7 +673,209 @@ public final class Stash {
                 }
             }
 
-            return new Stash(this, storageFactory);
+            return new Stash(this, storageFactory, random);
+        }
+
+        /**
+         * Sets the executor that performs the cryptographic work of
+         * asynchronous operations on secrets.
+         *
+         * <p>{@link Secret#acquireAsync()} and {@link Secret.Lock#releaseAsync()}
+         * move reading secrets from storage and writing them back to the crypto
+         * executor. By default, the {@link ForkJoinPool#commonPool() common pool}
+         * is used.</p>
+         *
+         * <p>The number of tasks that have been submitted to the executor but
+         * not yet completed is bounded by {@code maxPendingTasks}. Once the
+         * bound has been reached, asynchronous acquisitions fail with a
+         * {@link java.util.concurrent.RejectedExecutionException} until the
+         * executor catches up.</p>
+         *
+         * @param executor          the crypto executor, or {@code null} to use
+         *                          the default executor
+         * @param maxPendingTasks   the maximum number of pending tasks
+         *
+         * @return  this builder instance
+         *
+         * @throws IllegalArgumentException if {@code maxPendingTasks} is not positive
+         *
+         * @since   0.2.0
+         */
+        public Builder withCryptoExecutor(@Nullable Executor executor, int maxPendingTasks) {
+            if (executor != null && maxPendingTasks <= 0) throw new IllegalArgumentException("Maximum number of pending tasks must be positive: " + maxPendingTasks);
+
+            this.cryptoExecutor = executor;
+            this.maxPendingCryptoTasks = maxPendingTasks;
+            return this;
+        }
+
+        /**
+         * Sets the algorithm that is used to encrypt secrets in process memory.
+         *
+         * <p>By default, secrets are kept in the most secure storage that is
+         * available on the current platform. When an algorithm is set, secrets
+         * are instead encrypted using the given algorithm and kept on the Java
+         * heap. Depending on the host, this may be considerably faster.
+         * {@link EncryptionAlgorithm#AUTO} selects the fastest algorithm for
+         * the current host.</p>
+         *
+         * <p>An encryption algorithm is not available in combination with an
+         * explicitly set {@link StorageFactory} or
+         * {@link #withEnvelopeEncryption(boolean) envelope encryption}.</p>
+         *
+         * @param value the encryption algorithm, or {@code null} to use the
+         *              default storage
+         *
+         * @return  this builder instance
+         *
+         * @since   0.2.0
+         */
+        public Builder withEncryptionAlgorithm(@Nullable EncryptionAlgorithm value) {
+            this.encryptionAlgorithm = value;
+            return this;
+        }
+
+        /**
+         * Sets whether the stash uses envelope encryption.
+         *
+         * <p>By default, the data of each secret is encrypted with a key of its
+         * own that is generated for every write. When envelope encryption is
+         * enabled, all secrets of the stash are encrypted with a single
+         * <em>master key</em> instead. This makes writing to storage
+         * significantly cheaper since only a nonce has to be drawn for each
+         * write. The master key may be {@link Stash#rotateMasterKey() rotated}
+         * at any time.</p>
+         *
+         * <p>Additionally, the encrypted data of small secrets is packed into
+         * large, shared blocks of native memory. This considerably reduces the
+         * memory overhead per secret for stashes that hold many secrets.</p>
+         *
+         * <p>The master key is kept in process memory. Thus, envelope
+         * encryption is not available in combination with an explicitly set
+         * {@link StorageFactory}.</p>
+         *
+         * @param value whether envelope encryption should be used
+         *
+         * @return  this builder instance
+         *
+         * @since   0.2.0
+         */
+        public Builder withEnvelopeEncryption(boolean value) {
+            this.isEnvelopeEncryptionEnabled = value;
+            return this;
+        }
+
+        /**
+         * Sets whether and how long released secrets are kept warm.
+         *
+         * <p>By default, a secret is serialized and written to storage as soon
+         * as its last lock is released, and read from storage and deserialized
+         * again when it is acquired the next time. For secrets that are
+         * acquired frequently (for example, once per request), this may
+         * dominate the cost of accessing them.</p>
+         *
+         * <p>When secrets are kept warm, the serialized plaintext of a released
+         * secret is kept in (native) memory for the given grace period instead.
+         * Acquiring the secret again within this period does not involve the
+         * storage at all. The total size of the plaintext that is kept warm is
+         * bounded by {@code maxBytes}. If the bound is exceeded, the least
+         * recently released secrets are written to storage early. Plaintext is
+         * zeroed as soon as it is written to storage, and when the secret is
+         * disposed or the stash is cleared.</p>
+         *
+         * <p>Keeping secrets warm trades security for performance since
+         * plaintext is kept in memory while no lock is held.</p>
+         *
+         * @param gracePeriod   the period of time for which released secrets are
+         *                      kept warm, or {@code null} to disable keeping
+         *                      secrets warm
+         * @param maxBytes      the maximum total size of the plaintext that is
+         *                      kept warm in bytes
+         *
+         * @return  this builder instance
+         *
+         * @throws IllegalArgumentException if the grace period is negative, or {@code maxBytes} is not positive
+         *
+         * @since   0.2.0
+         */
+        public Builder withKeepWarm(@Nullable Duration gracePeriod, long maxBytes) {
+            if (gracePeriod != null) {
+                if (gracePeriod.isNegative()) throw new IllegalArgumentException("Grace period must not be negative: " + gracePeriod);
+                if (maxBytes <= 0) throw new IllegalArgumentException("Maximum size must be positive: " + maxBytes);
+            }
+
+            this.keepWarmGracePeriod = gracePeriod;
+            this.keepWarmMaxBytes = maxBytes;
+            return this;
+        }
+
+        /**
+         * Sets the {@link StashMetrics} that receive measurements of the
+         * operations performed by the stash.
+         *
+         * <p>By default, operations are not measured at all. The same metrics
+         * may be shared by multiple stashes.</p>
+         *
+         * @param value the metrics for the stash, or {@code null} to not
+         *              measure operations
+         *
+         * @return  this builder instance
+         *
+         * @see HistogramStashMetrics
+         *
+         * @since   0.2.0
+         */
+        public Builder withMetrics(@Nullable StashMetrics value) {
+            this.metrics = value;
+            return this;
+        }
+
+        /**
+         * Sets the {@link SecureRandom} that is used as entropy source for the
+         * stash.
+         *
+         * <p>Random bytes are drawn from the source ahead of time by a
+         * background thread and buffered. Only when the buffer runs dry, the
+         * source is used directly. Thus, the source should never block.</p>
+         *
+         * @param value the entropy source for the stash
+         *
+         * @return  this builder instance
+         *
+         * @since   0.2.0
+         */
+        public Builder withSecureRandom(@Nullable SecureRandom value) {
+            this.secureRandom = value;
+            return this;
+        }
+
+        /**
+         * Sets whether and for how long the stash is wiped when the JVM shuts
+         * down.
+         *
+         * <p>By default, secrets that have not been disposed when the JVM shuts
+         * down are left to the operating system. When a timeout is set, a
+         * shutdown hook {@link Stash#close() closes} the stash instead. Since
+         * shutdown hooks delay the termination of the JVM, the hook gives up
+         * once the given timeout has elapsed.</p>
+         *
+         * <p>The shutdown hook keeps the stash reachable until it is closed.
+         * Closing the stash explicitly removes the hook.</p>
+         *
+         * @param timeout   the maximum time to spend wiping the stash, or
+         *                  {@code null} to not wipe the stash on shutdown
+         *
+         * @return  this builder instance
+         *
+         * @throws IllegalArgumentException if the timeout is negative
+         *
+         * @since   0.2.0
+         */
+        public Builder withWipeOnShutdown(@Nullable Duration timeout) {
+            if (timeout != null && timeout.isNegative()) throw new IllegalArgumentException("Timeout must not be negative: " + timeout);
+
+            this.shutdownWipeTimeout = timeout;
+            return this;
         }
 
         /**
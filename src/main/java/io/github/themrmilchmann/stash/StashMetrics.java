@@ -0,0 +1,133 @@
+/*
+ * Copyright (c) 2022 Leon Linhart
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package io.github.themrmilchmann.stash;
+
+/**
+ * A listener that receives measurements of the operations performed by a
+ * {@link Stash}.
+ *
+ * <p>Metrics are set using {@link Stash.Builder#withMetrics(StashMetrics)}.
+ * Callbacks are invoked synchronously by the thread that performed the
+ * measured operation, often while the respective secret is being moved from or
+ * to storage. Thus, implementations must be thread-safe, should not block, and
+ * should return as quickly as possible. {@link HistogramStashMetrics} is a
+ * lock-free implementation that aggregates all measurements into histograms.</p>
+ *
+ * <p>All durations are measured using {@link System#nanoTime()} and passed to
+ * the callbacks in nanoseconds. All sizes are passed in bytes. The default
+ * implementations of all callbacks do nothing.</p>
+ *
+ * @since   0.2.0
+ *
+ * @author  Leon Linhart
+ */
+public interface StashMetrics {
+
+    /**
+     * {@return metrics that ignore all measurements}
+     *
+     * <p>This is the default for every stash. A stash that uses these metrics
+     * does not measure its operations at all.</p>
+     *
+     * @since   0.2.0
+     */
+    static StashMetrics noop() {
+        return NoopStashMetrics.INSTANCE;
+    }
+
+    /**
+     * Invoked when a secret has been put into a stash.
+     *
+     * @param nanos the time it took to create, serialize, and store the secret
+     * @param size  the size of the serialized secret
+     *
+     * @since   0.2.0
+     */
+    default void onPut(long nanos, int size) {}
+
+    /**
+     * Invoked when a lock has been acquired.
+     *
+     * <p>An acquisition is <em>cold</em> if the secret had to be read from
+     * storage. Otherwise, the secret was either held already or has been read
+     * from the {@link Stash.Builder#withKeepWarm(java.time.Duration, long) warm cache}.</p>
+     *
+     * @param nanos     the time it took to acquire the lock, including the time
+     *                  spent waiting for other threads
+     * @param isCold    whether the secret had to be read from storage
+     *
+     * @since   0.2.0
+     */
+    default void onAcquire(long nanos, boolean isCold) {}
+
+    /**
+     * Invoked when a lock has been released.
+     *
+     * @param nanos the time it took to release the lock, including the time
+     *              spent writing the secret back to storage (or the warm cache)
+     *              if it was the last lock
+     *
+     * @since   0.2.0
+     */
+    default void onRelease(long nanos) {}
+
+    /**
+     * Invoked when plaintext has been written to storage.
+     *
+     * @param nanos the time it took to write the plaintext
+     * @param size  the size of the plaintext
+     *
+     * @since   0.2.0
+     */
+    default void onEncrypt(long nanos, int size) {}
+
+    /**
+     * Invoked when plaintext has been read from storage.
+     *
+     * @param nanos the time it took to read the plaintext
+     * @param size  the size of the plaintext
+     *
+     * @since   0.2.0
+     */
+    default void onDecrypt(long nanos, int size) {}
+
+    /**
+     * Invoked when a value has been serialized.
+     *
+     * @param nanos the time it took to serialize the value
+     * @param size  the size of the serialized value
+     *
+     * @since   0.2.0
+     */
+    default void onSerialize(long nanos, int size) {}
+
+    /**
+     * Invoked when a value has been deserialized.
+     *
+     * @param nanos the time it took to deserialize the value
+     * @param size  the size of the serialized value
+     *
+     * @since   0.2.0
+     */
+    default void onDeserialize(long nanos, int size) {}
+
+}
\ No newline at end of file
@@ -0,0 +1,106 @@
+/*
+ * Copyright (c) 2022 Leon Linhart
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package io.github.themrmilchmann.stash;
+
+import javax.annotation.Nullable;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Adapts an array-based {@link Storage} to the {@link BufferStorage} contract.
+ *
+ * <p>Since reads from the wrapped storage are destructive, the data is read
+ * from the wrapped storage once its size is queried and held onto until it is
+ * read.</p>
+ *
+ * @author  Leon Linhart
+ */
+final class StorageAdapter implements BufferStorage {
+
+    private final Storage storage;
+
+    @Nullable private byte[] pending;
+
+    StorageAdapter(Storage storage) {
+        this.storage = storage;
+    }
+
+    @Override
+    public void dispose() {
+        try {
+            this.clearPending();
+        } finally {
+            this.storage.dispose();
+        }
+    }
+
+    @Override
+    public int size() {
+        if (this.pending == null) this.pending = this.storage.read();
+        return this.pending.length;
+    }
+
+    @Override
+    public byte[] read() {
+        byte[] bytes = this.pending;
+        this.pending = null;
+
+        return (bytes != null) ? bytes : this.storage.read();
+    }
+
+    @Override
+    public void read(ByteBuffer dst) {
+        byte[] bytes = this.read();
+
+        try {
+            dst.put(bytes);
+        } finally {
+            Arrays.fill(bytes, (byte) 0);
+        }
+    }
+
+    @Override
+    public void write(byte[] bytes) {
+        this.clearPending();
+        this.storage.write(bytes);
+    }
+
+    @Override
+    public void write(ByteBuffer src) {
+        byte[] bytes = new byte[src.remaining()];
+        src.get(bytes);
+
+        try {
+            this.write(bytes);
+        } finally {
+            Arrays.fill(bytes, (byte) 0);
+        }
+    }
+
+    private void clearPending() {
+        if (this.pending != null) {
+            Arrays.fill(this.pending, (byte) 0);
+            this.pending = null;
+        }
+    }
+
+}
@@ -21,6 +21,10 @@
  */
 package io.github.themrmilchmann.stash;
 
+import io.github.themrmilchmann.stash.internal.platform.linux.KeyringStorageFactory;
+
+import java.security.SecureRandom;
+
 /**
  * A {@code StorageFactory} is responsible for creating {@link Storage}
  * instances.
@@ -33,6 +37,26 @@ package io.github.themrmilchmann.stash;
  */
 public interface StorageFactory<S extends Storage> {
 
+    /**
+     * {@return a factory for storages that keep their data in the Linux kernel
+     * keyring}
+     *
+     * <p>Data in the kernel keyring is kept outside the address space of the
+     * process and only copied into it while a secret is acquired. Each secret
+     * occupies one key in the keyring of the current process. Since the kernel
+     * limits the number of keys (and their total size) per user, this factory
+     * is never selected automatically. Instead, it may be set explicitly using
+     * {@link Stash.Builder#withStorageFactory(StorageFactory)}.</p>
+     *
+     * <p>The returned factory is only {@link #isSupported() supported} on Linux
+     * systems that provide the kernel keyring.</p>
+     *
+     * @since   0.2.0
+     */
+    static StorageFactory<? extends BufferStorage> kernelKeyring() {
+        return new KeyringStorageFactory();
+    }
+
     /**
      * {@return a new storage instance}
      *
@@ -40,6 +64,23 @@ public interface StorageFactory<S extends Storage> {
      */
     S create();
 
+    /**
+     * {@return a new storage instance that draws randomness from the given source}
+     *
+     * <p>A {@link Stash} creates all of its storage instances using this
+     * method to share a single entropy source between them.</p>
+     *
+     * @param random    the source of randomness for the storage
+     *
+     * @implSpec    The default implementation ignores the given source and
+     *              delegates to {@link #create()}.
+     *
+     * @since   0.2.0
+     */
+    default S create(SecureRandom random) {
+        return this.create();
+    }
+
     /**
      * {@return whether this type of storage is supported}
      *
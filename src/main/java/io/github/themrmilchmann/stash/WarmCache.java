@@ -0,0 +1,235 @@
+/*
+ * Copyright (c) 2022 Leon Linhart
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package io.github.themrmilchmann.stash;
+
+import javax.annotation.Nullable;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A cache that keeps the plaintext of recently released secrets around for a
+ * grace period.
+ *
+ * <p>The cache only tracks the {@link Entry entries} and their order; the
+ * plaintext itself is owned by the respective secret. Entries are evicted
+ * when their grace period has passed, or in least-recently-released order when
+ * the total size of the cached plaintext exceeds the limit of the cache.
+ * Evicting an entry writes its plaintext into the storage of its secret
+ * (unless the storage still holds the same data) and zeroes it.</p>
+ *
+ * <p>Since every secret has to be written to storage eventually, evictions are
+ * never performed while the lock of the cache is held. Instead, evicted
+ * entries are handed to the caller (or the background sweeper) which then
+ * {@link Secret#cool(Entry) cools} the respective secrets.</p>
+ *
+ * @author  Leon Linhart
+ */
+final class WarmCache {
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    /*
+     * The grace period is the same for all entries. Thus, the insertion order
+     * is both the least-recently-released order and the order of expiration.
+     */
+    private final LinkedHashSet<Entry> entries = new LinkedHashSet<>();
+
+    private final long gracePeriodNanos;
+    private final long maxBytes;
+
+    private long bytes;
+
+    @Nullable private ScheduledFuture<?> sweep;
+
+    WarmCache(long gracePeriodNanos, long maxBytes) {
+        this.gracePeriodNanos = gracePeriodNanos;
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * {@return whether plaintext of the given size may be cached}
+     */
+    boolean fits(int size) {
+        return size <= this.maxBytes;
+    }
+
+    /**
+     * {@return a new entry for the given plaintext of the given secret}
+     *
+     * @param isStored  whether the storage of the secret still holds the same
+     *                  data, in which case evicting the entry does not write to
+     *                  storage
+     */
+    Entry createEntry(Secret<?> secret, ByteBuffer plaintext, boolean isStored) {
+        return new Entry(secret, plaintext, isStored, System.nanoTime() + this.gracePeriodNanos);
+    }
+
+    /**
+     * Adds the given entry to this cache.
+     *
+     * @return  the entries that have been evicted to make room for the new one
+     */
+    List<Entry> add(Entry entry) {
+        List<Entry> evicted = List.of();
+
+        this.lock.lock();
+
+        try {
+            this.entries.add(entry);
+            this.bytes += entry.size;
+
+            if (this.bytes > this.maxBytes) {
+                evicted = new ArrayList<>();
+
+                for (Iterator<Entry> itr = this.entries.iterator(); this.bytes > this.maxBytes && itr.hasNext(); ) {
+                    Entry head = itr.next();
+                    itr.remove();
+
+                    this.bytes -= head.size;
+                    evicted.add(head);
+                }
+            }
+
+            if (this.sweep == null) this.schedule(this.gracePeriodNanos);
+        } finally {
+            this.lock.unlock();
+        }
+
+        return evicted;
+    }
+
+    /**
+     * Removes the given entry from this cache, if present.
+     */
+    void remove(Entry entry) {
+        this.lock.lock();
+
+        try {
+            if (this.entries.remove(entry)) this.bytes -= entry.size;
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    private void schedule(long delayNanos) {
+        assert (this.lock.isHeldByCurrentThread());
+        this.sweep = SweeperHolder.EXECUTOR.schedule(this::sweep, delayNanos, TimeUnit.NANOSECONDS);
+    }
+
+    private void sweep() {
+        List<Entry> expired = new ArrayList<>();
+
+        this.lock.lock();
+
+        try {
+            long now = System.nanoTime();
+
+            for (Iterator<Entry> itr = this.entries.iterator(); itr.hasNext(); ) {
+                Entry head = itr.next();
+                if (head.deadline - now > 0) break;
+
+                itr.remove();
+
+                this.bytes -= head.size;
+                expired.add(head);
+            }
+
+            if (this.entries.isEmpty()) {
+                this.sweep = null;
+            } else {
+                this.schedule(this.entries.iterator().next().deadline - now);
+            }
+        } finally {
+            this.lock.unlock();
+        }
+
+        cool(expired);
+    }
+
+    /**
+     * {@link Secret#cool(Entry) Cools} the secrets of the given entries.
+     *
+     * <p>A failure to cool a secret does not prevent the remaining secrets from
+     * being cooled. The first failure is rethrown once all secrets have been
+     * processed.</p>
+     *
+     * @param entries   the entries that have been evicted from a cache
+     */
+    static void cool(List<Entry> entries) {
+        RuntimeException failure = null;
+
+        for (Entry entry : entries) {
+            try {
+                entry.secret.cool(entry);
+            } catch (RuntimeException e) {
+                if (failure == null) {
+                    failure = e;
+                } else {
+                    failure.addSuppressed(e);
+                }
+            }
+        }
+
+        if (failure != null) throw failure;
+    }
+
+    /**
+     * An entry of the cache that refers to the cached plaintext of a secret.
+     */
+    static final class Entry {
+
+        final Secret<?> secret;
+        final ByteBuffer plaintext;
+        final boolean isStored;
+        final int size;
+        final long deadline;
+
+        private Entry(Secret<?> secret, ByteBuffer plaintext, boolean isStored, long deadline) {
+            this.secret = secret;
+            this.plaintext = plaintext;
+            this.isStored = isStored;
+            this.size = plaintext.remaining();
+            this.deadline = deadline;
+        }
+
+    }
+
+    private static final class SweeperHolder {
+
+        static final ScheduledExecutorService EXECUTOR = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "Stash Keep-Warm Sweeper");
+            thread.setDaemon(true);
+
+            return thread;
+        });
+
+    }
+
+}
@@ -0,0 +1,175 @@
+/*
+ * Copyright (c) 2022 Leon Linhart
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package io.github.themrmilchmann.stash.internal;
+
+import java.security.SecureRandom;
+import java.security.SecureRandomSpi;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A {@link SecureRandom} that serves random bytes from a ring buffer which is
+ * filled ahead of time by a background thread.
+ *
+ * <p>Requests that can be satisfied by the buffer never touch the underlying
+ * source. If the buffer runs dry, the request is served directly by the source
+ * instead. Thus, a non-blocking source (such as a DRBG) guarantees that this
+ * random never blocks on entropy.</p>
+ *
+ * <p>Bytes are zeroed in the buffer as soon as they have been handed out.</p>
+ *
+ * @author  Leon Linhart
+ */
+@SuppressWarnings("serial")
+public final class BufferedSecureRandom extends SecureRandom {
+
+    /**
+     * Creates a new {@code BufferedSecureRandom}.
+     *
+     * @param source    the source to draw random bytes from
+     * @param capacity  the capacity of the buffer in bytes
+     */
+    public BufferedSecureRandom(SecureRandom source, int capacity) {
+        this(new Spi(source, capacity));
+    }
+
+    private BufferedSecureRandom(Spi spi) {
+        super(spi, null);
+
+        spi.owner = this;
+        spi.scheduleRefill();
+    }
+
+    /*
+     * SecureRandom serializes all calls into an SPI that is not registered as
+     * thread-safe on its own monitor. Instead of using a separate lock, the
+     * refill thread synchronizes on the same monitor.
+     */
+    @SuppressWarnings("serial")
+    private static final class Spi extends SecureRandomSpi {
+
+        private final AtomicBoolean isRefillScheduled = new AtomicBoolean();
+
+        private final SecureRandom source;
+        private final byte[] buffer;
+
+        private SecureRandom owner;
+        private int position, available;
+
+        private Spi(SecureRandom source, int capacity) {
+            if (capacity <= 0) throw new IllegalArgumentException("capacity must be positive");
+
+            this.source = source;
+            this.buffer = new byte[capacity];
+        }
+
+        @Override
+        protected void engineSetSeed(byte[] seed) {
+            this.source.setSeed(seed);
+        }
+
+        @Override
+        protected void engineNextBytes(byte[] bytes) {
+            if (!this.take(bytes)) this.source.nextBytes(bytes);
+        }
+
+        @Override
+        protected byte[] engineGenerateSeed(int numBytes) {
+            return this.source.generateSeed(numBytes);
+        }
+
+        private boolean take(byte[] bytes) {
+            assert (Thread.holdsLock(this.owner));
+
+            if (this.available < this.buffer.length / 2) this.scheduleRefill();
+            if (this.available < bytes.length) return false;
+
+            int head = Math.min(bytes.length, this.buffer.length - this.position);
+            System.arraycopy(this.buffer, this.position, bytes, 0, head);
+            Arrays.fill(this.buffer, this.position, this.position + head, (byte) 0);
+
+            int tail = bytes.length - head;
+            System.arraycopy(this.buffer, 0, bytes, head, tail);
+            Arrays.fill(this.buffer, 0, tail, (byte) 0);
+
+            this.position = (this.position + bytes.length) % this.buffer.length;
+            this.available -= bytes.length;
+
+            return true;
+        }
+
+        private void scheduleRefill() {
+            if (!this.isRefillScheduled.compareAndSet(false, true)) return;
+            RefillExecutorHolder.EXECUTOR.execute(this::refill);
+        }
+
+        private void refill() {
+            try {
+                int free;
+
+                synchronized (this.owner) {
+                    free = this.buffer.length - this.available;
+                }
+
+                if (free == 0) return;
+
+                /*
+                 * Draw from the source without holding the monitor. Concurrent
+                 * takes may only increase the amount of free space in the
+                 * meantime, so the chunk is guaranteed to fit.
+                 */
+                byte[] chunk = new byte[free];
+                this.source.nextBytes(chunk);
+
+                try {
+                    synchronized (this.owner) {
+                        int offset = (this.position + this.available) % this.buffer.length;
+                        int head = Math.min(chunk.length, this.buffer.length - offset);
+                        System.arraycopy(chunk, 0, this.buffer, offset, head);
+                        System.arraycopy(chunk, head, this.buffer, 0, chunk.length - head);
+
+                        this.available += chunk.length;
+                    }
+                } finally {
+                    Arrays.fill(chunk, (byte) 0);
+                }
+            } finally {
+                this.isRefillScheduled.set(false);
+            }
+        }
+
+    }
+
+    private static final class RefillExecutorHolder {
+
+        static final ExecutorService EXECUTOR = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "Stash Entropy Refill");
+            thread.setDaemon(true);
+
+            return thread;
+        });
+
+    }
+
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright (c) 2022 Leon Linhart
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package io.github.themrmilchmann.stash.internal;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Utilities for working with {@link ByteBuffer buffers} that hold sensitive
+ * data.
+ *
+ * @author  Leon Linhart
+ */
+public final class Buffers {
+
+    private static final byte[] ZEROES = new byte[4096];
+
+    /**
+     * Overwrites the entire content (i.e. up to the capacity) of the given
+     * buffer with zeroes. The position and limit of the buffer are not
+     * modified.
+     *
+     * @param buffer    the buffer to zero
+     */
+    public static void zero(ByteBuffer buffer) {
+        int limit = buffer.limit();
+        buffer.limit(buffer.capacity());
+
+        try {
+            zero(buffer, 0, buffer.capacity());
+        } finally {
+            buffer.limit(limit);
+        }
+    }
+
+    /**
+     * Overwrites {@code length} bytes of the given buffer, starting at the
+     * given {@code index}, with zeroes. The position and limit of the buffer
+     * are not modified, and the range must lie within the limit.
+     *
+     * @param buffer    the buffer to zero
+     * @param index     the index of the first byte to zero
+     * @param length    the number of bytes to zero
+     */
+    public static void zero(ByteBuffer buffer, int index, int length) {
+        int end = index + length;
+
+        for (int i = index; i < end; i += ZEROES.length) {
+            buffer.put(i, ZEROES, 0, Math.min(ZEROES.length, end - i));
+        }
+    }
+
+    private Buffers() {}
+
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright (c) 2022 Leon Linhart
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package io.github.themrmilchmann.stash.internal;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * A bounded, non-blocking pool of reusable instances.
+ *
+ * <p>Instances are created on demand when the pool is empty and dropped when
+ * they are returned to a full pool. Since the pool never blocks and does not
+ * bind instances to threads, it is safe to use from virtual threads.</p>
+ *
+ * @param <T>   the type of the pooled instances
+ *
+ * @author  Leon Linhart
+ */
+public final class InstancePool<T> {
+
+    private final Queue<T> instances = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger size = new AtomicInteger();
+
+    private final Supplier<T> factory;
+    private final int capacity;
+
+    /**
+     * Creates a new pool.
+     *
+     * @param factory   the factory used to create new instances
+     * @param capacity  the maximum number of idle instances kept by the pool
+     */
+    public InstancePool(Supplier<T> factory, int capacity) {
+        if (capacity < 0) throw new IllegalArgumentException("capacity must not be negative");
+
+        this.factory = factory;
+        this.capacity = capacity;
+    }
+
+    /**
+     * {@return an instance from this pool, or a new instance if the pool is empty}
+     */
+    public T acquire() {
+        T instance = this.instances.poll();
+        if (instance == null) return this.factory.get();
+
+        this.size.decrementAndGet();
+        return instance;
+    }
+
+    /**
+     * Returns the given instance to this pool.
+     *
+     * <p>Callers must not use the instance after it has been returned.</p>
+     *
+     * @param instance  the instance to return
+     */
+    public void release(T instance) {
+        if (this.size.incrementAndGet() > this.capacity) {
+            this.size.decrementAndGet();
+            return;
+        }
+
+        this.instances.offer(instance);
+    }
+
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright (c) 2022 Leon Linhart
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package io.github.themrmilchmann.stash.internal;
+
+import java.security.SecureRandom;
+import java.security.SecureRandomSpi;
+import java.util.Arrays;
+
+/**
+ * A {@link SecureRandom} that serves random bytes from a block that has been
+ * drawn from a source in a single request.
+ *
+ * <p>Drawing many small chunks of random bytes from a source one at a time is
+ * considerably more expensive than drawing all of them at once. Thus, callers
+ * that know how much randomness they are going to need ahead of time (for
+ * example, to encrypt a batch of secrets) may prefetch it. Once the block has
+ * been used up, requests are served directly by the source instead.</p>
+ *
+ * <p>Bytes are zeroed in the block as soon as they have been handed out.</p>
+ *
+ * @author  Leon Linhart
+ */
+@SuppressWarnings("serial")
+public final class PrefetchedSecureRandom extends SecureRandom {
+
+    /**
+     * Creates a new {@code PrefetchedSecureRandom}.
+     *
+     * @param source    the source to draw random bytes from
+     * @param size      the number of bytes to prefetch
+     */
+    public PrefetchedSecureRandom(SecureRandom source, int size) {
+        super(new Spi(source, size), null);
+    }
+
+    /*
+     * SecureRandom serializes all calls into an SPI that is not registered as
+     * thread-safe. Thus, no further synchronization is required here.
+     */
+    @SuppressWarnings("serial")
+    private static final class Spi extends SecureRandomSpi {
+
+        private final SecureRandom source;
+        private final byte[] block;
+
+        private int position;
+
+        private Spi(SecureRandom source, int size) {
+            if (size < 0) throw new IllegalArgumentException("size must not be negative");
+
+            this.source = source;
+            this.block = new byte[size];
+
+            source.nextBytes(this.block);
+        }
+
+        @Override
+        protected void engineSetSeed(byte[] seed) {
+            this.source.setSeed(seed);
+        }
+
+        @Override
+        protected void engineNextBytes(byte[] bytes) {
+            if (bytes.length > this.block.length - this.position) {
+                this.source.nextBytes(bytes);
+                return;
+            }
+
+            System.arraycopy(this.block, this.position, bytes, 0, bytes.length);
+            Arrays.fill(this.block, this.position, this.position + bytes.length, (byte) 0);
+
+            this.position += bytes.length;
+        }
+
+        @Override
+        protected byte[] engineGenerateSeed(int numBytes) {
+            return this.source.generateSeed(numBytes);
+        }
+
+    }
+
+}
\ No newline at end of file
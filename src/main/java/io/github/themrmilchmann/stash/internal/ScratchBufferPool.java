@@ -0,0 +1,93 @@
+/*
+ * Copyright (c) 2022 Leon Linhart
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package io.github.themrmilchmann.stash.internal;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A pool of direct {@link ByteBuffer buffers} that are used as short-lived
+ * scratch space for sensitive data.
+ *
+ * <p>Buffers are bucketed into power-of-two size classes. Buffers that are
+ * larger than the largest size class are not pooled. All buffers are zeroed
+ * when they are returned to the pool.</p>
+ *
+ * @author  Leon Linhart
+ */
+public final class ScratchBufferPool {
+
+    private static final int MIN_SIZE_CLASS = 6;    // 64 B
+    private static final int MAX_SIZE_CLASS = 16;   // 64 KiB
+
+    private static final int POOL_CAPACITY = Runtime.getRuntime().availableProcessors();
+
+    private static int sizeClass(int capacity) {
+        return Math.max(MIN_SIZE_CLASS, Integer.SIZE - Integer.numberOfLeadingZeros(Math.max(capacity, 1) - 1));
+    }
+
+    private final InstancePool<ByteBuffer>[] pools;
+
+    /** Creates a new pool. */
+    @SuppressWarnings({ "rawtypes", "unchecked" })
+    public ScratchBufferPool() {
+        this.pools = new InstancePool[MAX_SIZE_CLASS - MIN_SIZE_CLASS + 1];
+
+        for (int i = 0; i < this.pools.length; i++) {
+            int capacity = 1 << (MIN_SIZE_CLASS + i);
+            this.pools[i] = new InstancePool<>(() -> ByteBuffer.allocateDirect(capacity), POOL_CAPACITY);
+        }
+    }
+
+    /**
+     * {@return a buffer with at least the given capacity}
+     *
+     * <p>The position of the returned buffer is zero, and its limit is the
+     * requested capacity.</p>
+     *
+     * @param capacity  the minimum capacity of the buffer
+     */
+    public ByteBuffer acquire(int capacity) {
+        int sizeClass = sizeClass(capacity);
+        ByteBuffer buffer = (sizeClass <= MAX_SIZE_CLASS)
+            ? this.pools[sizeClass - MIN_SIZE_CLASS].acquire()
+            : ByteBuffer.allocateDirect(capacity);
+
+        return buffer.clear().limit(capacity);
+    }
+
+    /**
+     * Zeroes the given buffer and returns it to this pool.
+     *
+     * <p>Callers must not use the buffer after it has been returned.</p>
+     *
+     * @param buffer    a buffer that was {@link #acquire(int) acquired} from this pool
+     */
+    public void release(ByteBuffer buffer) {
+        Buffers.zero(buffer);
+
+        int sizeClass = sizeClass(buffer.capacity());
+        if (sizeClass > MAX_SIZE_CLASS || buffer.capacity() != (1 << sizeClass)) return;
+
+        this.pools[sizeClass - MIN_SIZE_CLASS].release(buffer);
+    }
+
+}
@@ -0,0 +1,385 @@
+/*
+ * Copyright (c) 2022 Leon Linhart
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package io.github.themrmilchmann.stash.internal;
+
+import com.sun.jna.Native;
+import com.sun.jna.Pointer;
+
+import javax.annotation.Nullable;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * An allocator that packs small allocations into large, shared slabs of native
+ * memory.
+ *
+ * <p>Allocations are bucketed into power-of-two size classes. Each size class
+ * carves fixed-size {@link Slot slots} out of its slabs and keeps a free list
+ * of slots that have been returned to it. Allocations that are larger than the
+ * largest size class are served by dedicated blocks of memory instead.</p>
+ *
+ * <p>Slots are zeroed when they are {@link #free(Slot) freed}. A slab is
+ * returned to the {@link MemorySource} as soon as all of its slots have been
+ * freed, so that an allocator that is never {@link #close() closed} does not
+ * hold on to memory that is no longer in use.</p>
+ *
+ * <p>Memory sources may restrict access to their memory. Thus, the content of
+ * a slot must only be accessed between calls to {@link Slot#beginAccess()} and
+ * {@link Slot#endAccess()}.</p>
+ *
+ * @author  Leon Linhart
+ */
+public final class SlabAllocator implements AutoCloseable {
+
+    private static final int MIN_SIZE_CLASS = 5;    // 32 B
+    private static final int MAX_SIZE_CLASS = 12;   // 4 KiB
+
+    private static final int SLAB_SIZE = 64 * 1024;
+
+    private static int sizeClass(int size) {
+        return Math.max(MIN_SIZE_CLASS, Integer.SIZE - Integer.numberOfLeadingZeros(Math.max(size, 1) - 1));
+    }
+
+    private final MemorySource source;
+    private final SizeClass[] sizeClasses;
+
+    /**
+     * Creates a new allocator that draws its slabs from the given source.
+     *
+     * @param source    the source of native memory
+     */
+    public SlabAllocator(MemorySource source) {
+        this.source = source;
+        this.sizeClasses = new SizeClass[MAX_SIZE_CLASS - MIN_SIZE_CLASS + 1];
+
+        for (int i = 0; i < this.sizeClasses.length; i++) {
+            this.sizeClasses[i] = new SizeClass(1 << (MIN_SIZE_CLASS + i));
+        }
+    }
+
+    /**
+     * {@return a slot of at least the given size}
+     *
+     * <p>The content of a newly allocated slot is zeroed.</p>
+     *
+     * @param size  the minimum size of the slot in bytes
+     */
+    public Slot allocate(int size) {
+        int sizeClass = sizeClass(size);
+        if (sizeClass <= MAX_SIZE_CLASS) return this.sizeClasses[sizeClass - MIN_SIZE_CLASS].allocate();
+
+        Pointer base = this.source.allocate(size);
+        Slot slot = new Slot(null, this.source, base, 0, size);
+
+        slot.beginAccess();
+
+        try {
+            slot.zero();
+        } finally {
+            slot.endAccess();
+        }
+
+        return slot;
+    }
+
+    /**
+     * Zeroes the given slot and returns it to this allocator.
+     *
+     * <p>Callers must not use the slot after it has been freed.</p>
+     *
+     * @param slot  a slot that was {@link #allocate(int) allocated} by this allocator
+     */
+    public void free(Slot slot) {
+        slot.beginAccess();
+
+        try {
+            slot.zero();
+        } finally {
+            slot.endAccess();
+        }
+
+        if (slot.slab == null) {
+            this.source.free(slot.base, slot.size);
+        } else {
+            slot.slab.sizeClass.free(slot);
+        }
+    }
+
+    /**
+     * Zeroes all slabs and returns them to the memory source.
+     *
+     * <p>Slots that have not been freed must not be used after the allocator
+     * has been closed.</p>
+     */
+    @Override
+    public void close() {
+        for (SizeClass sizeClass : this.sizeClasses) sizeClass.close();
+    }
+
+    /**
+     * A source of native memory for slabs.
+     */
+    public interface MemorySource {
+
+        /** A source that allocates memory using {@code malloc}. */
+        MemorySource MALLOC = new MemorySource() {
+
+            @Override
+            public Pointer allocate(long size) {
+                long peer = Native.malloc(size);
+                if (peer == 0) throw new OutOfMemoryError("Failed to allocate " + size + " bytes of native memory");
+
+                return new Pointer(peer);
+            }
+
+            @Override
+            public void free(Pointer pointer, long size) {
+                Native.free(Pointer.nativeValue(pointer));
+            }
+
+        };
+
+        /**
+         * {@return a block of native memory of the given size}
+         *
+         * @param size  the size of the block in bytes
+         */
+        Pointer allocate(long size);
+
+        /**
+         * Returns a block of native memory that was allocated by this source.
+         *
+         * @param pointer   the address of the block
+         * @param size      the size of the block in bytes
+         */
+        void free(Pointer pointer, long size);
+
+        /**
+         * Makes the given range of memory accessible until a matching call to
+         * {@link #endAccess(Pointer, long)}.
+         *
+         * <p>Calls may be nested and ranges of concurrent accesses may
+         * overlap.</p>
+         *
+         * @param address   the start of the range
+         * @param size      the size of the range in bytes
+         *
+         * @implSpec    The default implementation does nothing.
+         */
+        default void beginAccess(Pointer address, long size) {}
+
+        /**
+         * Ends an access to the given range of memory that was started by
+         * {@link #beginAccess(Pointer, long)}.
+         *
+         * @param address   the start of the range
+         * @param size      the size of the range in bytes
+         *
+         * @implSpec    The default implementation does nothing.
+         */
+        default void endAccess(Pointer address, long size) {}
+
+    }
+
+    /**
+     * A slot of native memory that has been allocated by a
+     * {@link SlabAllocator}.
+     */
+    public static final class Slot {
+
+        @Nullable private final Slab slab;
+        private final MemorySource source;
+
+        private final Pointer base;
+        private final long offset;
+        private final int size;
+
+        private Slot(@Nullable Slab slab, MemorySource source, Pointer base, long offset, int size) {
+            this.slab = slab;
+            this.source = source;
+            this.base = base;
+            this.offset = offset;
+            this.size = size;
+        }
+
+        /** {@return the base address of the memory that contains this slot} */
+        public Pointer base() {
+            return this.base;
+        }
+
+        /** {@return the offset of this slot relative to its {@link #base() base}} */
+        public long offset() {
+            return this.offset;
+        }
+
+        /** {@return the size of this slot in bytes} */
+        public int size() {
+            return this.size;
+        }
+
+        /** Begins an access to the content of this slot. */
+        public void beginAccess() {
+            this.source.beginAccess(this.base.share(this.offset), this.size);
+        }
+
+        /** Ends an access to the content of this slot. */
+        public void endAccess() {
+            this.source.endAccess(this.base.share(this.offset), this.size);
+        }
+
+        /** Zeroes the content of this slot. */
+        public void zero() {
+            this.base.setMemory(this.offset, this.size, (byte) 0);
+        }
+
+    }
+
+    private final class SizeClass {
+
+        private final ReentrantLock lock = new ReentrantLock();
+
+        private final List<Slab> slabs = new ArrayList<>();
+
+        // The slabs that have slots left to allocate, most recently freed first.
+        private final Deque<Slab> availableSlabs = new ArrayDeque<>();
+
+        private final int slotSize;
+        private final int slotsPerSlab;
+
+        SizeClass(int slotSize) {
+            this.slotSize = slotSize;
+            this.slotsPerSlab = SLAB_SIZE / slotSize;
+        }
+
+        Slot allocate() {
+            this.lock.lock();
+
+            try {
+                Slab slab = this.availableSlabs.peekFirst();
+
+                if (slab == null) {
+                    Pointer base = SlabAllocator.this.source.allocate(SLAB_SIZE);
+                    this.zero(base);
+
+                    slab = new Slab(this, base);
+                    this.slabs.add(slab);
+                    this.availableSlabs.addFirst(slab);
+                }
+
+                Slot slot = slab.freeSlots.pollFirst();
+                if (slot == null) slot = new Slot(slab, SlabAllocator.this.source, slab.base, (long) slab.nextSlot++ * this.slotSize, this.slotSize);
+
+                slab.usedSlots++;
+                if (this.isFull(slab)) this.availableSlabs.removeFirst();
+
+                return slot;
+            } finally {
+                this.lock.unlock();
+            }
+        }
+
+        void free(Slot slot) {
+            Slab slab = slot.slab;
+            assert (slab != null && slab.sizeClass == this);
+
+            this.lock.lock();
+
+            try {
+                boolean wasFull = this.isFull(slab);
+
+                slab.freeSlots.addFirst(slot);
+                slab.usedSlots--;
+
+                if (slab.usedSlots == 0) {
+                    // All slots are zeroed when they are freed, so the slab does not have to be zeroed again.
+                    if (!wasFull) this.availableSlabs.remove(slab);
+                    this.slabs.remove(slab);
+
+                    SlabAllocator.this.source.free(slab.base, SLAB_SIZE);
+                } else if (wasFull) {
+                    this.availableSlabs.addFirst(slab);
+                }
+            } finally {
+                this.lock.unlock();
+            }
+        }
+
+        void close() {
+            this.lock.lock();
+
+            try {
+                for (Slab slab : this.slabs) {
+                    this.zero(slab.base);
+                    SlabAllocator.this.source.free(slab.base, SLAB_SIZE);
+                }
+
+                this.slabs.clear();
+                this.availableSlabs.clear();
+            } finally {
+                this.lock.unlock();
+            }
+        }
+
+        private boolean isFull(Slab slab) {
+            return slab.freeSlots.isEmpty() && slab.nextSlot == this.slotsPerSlab;
+        }
+
+        private void zero(Pointer slab) {
+            MemorySource source = SlabAllocator.this.source;
+            source.beginAccess(slab, SLAB_SIZE);
+
+            try {
+                slab.setMemory(0, SLAB_SIZE, (byte) 0);
+            } finally {
+                source.endAccess(slab, SLAB_SIZE);
+            }
+        }
+
+    }
+
+    /*
+     * The bookkeeping of a single slab. Guarded by the lock of its size class.
+     */
+    private static final class Slab {
+
+        final SizeClass sizeClass;
+        final Pointer base;
+
+        final Deque<Slot> freeSlots = new ArrayDeque<>();
+
+        // The number of slots that have been carved out of the slab so far.
+        int nextSlot;
+
+        // The number of slots that are currently allocated.
+        int usedSlots;
+
+        Slab(SizeClass sizeClass, Pointer base) {
+            this.sizeClass = sizeClass;
+            this.base = base;
+        }
+
+    }
+
+}
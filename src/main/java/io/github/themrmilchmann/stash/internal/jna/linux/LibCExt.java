@@ -0,0 +1,69 @@
+/*
+ * Copyright (c) 2022 Leon Linhart
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package io.github.themrmilchmann.stash.internal.jna.linux;
+
+import com.sun.jna.Native;
+import com.sun.jna.Pointer;
+import com.sun.jna.platform.linux.LibC;
+import io.github.themrmilchmann.stash.internal.platform.linux.GuardedMemoryPool;
+import io.github.themrmilchmann.stash.internal.platform.linux.LockedMemoryPool;
+import io.github.themrmilchmann.stash.internal.platform.linux.SecretMemoryPool;
+
+/**
+ * An extension to {@link LibC} that exposes additional functionality that is
+ * required for {@link LockedMemoryPool}, {@link GuardedMemoryPool} and
+ * {@link SecretMemoryPool}.
+ *
+ * @author  Leon Linhart
+ */
+public interface LibCExt extends LibC {
+
+    LibCExt INSTANCE = Native.load("c", LibCExt.class);
+
+    int MADV_DONTDUMP = 16;
+
+    int MADV_WIPEONFORK = 18;
+
+    /**
+     * The number of the {@code memfd_secret} system call. The number is shared
+     * by all architectures that use the generic system call table (including
+     * {@code x86_64}, {@code aarch64}, and {@code riscv64}).
+     */
+    long SYS_memfd_secret = 447;
+
+    Pointer mmap(Pointer addr, size_t length, int prot, int flags, int fd, long offset);
+
+    int mprotect(Pointer addr, size_t len, int prot);
+
+    int mlock(Pointer addr, size_t len);
+
+    int munlock(Pointer addr, size_t len);
+
+    int madvise(Pointer addr, size_t length, int advice);
+
+    int ftruncate(int fd, long length);
+
+    int getpagesize();
+
+    long syscall(long number, Object... args);
+
+}
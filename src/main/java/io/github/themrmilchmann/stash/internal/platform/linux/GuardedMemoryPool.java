@@ -0,0 +1,171 @@
+/*
+ * Copyright (c) 2022 Leon Linhart
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package io.github.themrmilchmann.stash.internal.platform.linux;
+
+import com.sun.jna.Native;
+import com.sun.jna.Pointer;
+import com.sun.jna.platform.linux.Mman;
+import com.sun.jna.platform.unix.LibCAPI;
+import io.github.themrmilchmann.stash.internal.jna.linux.LibCExt;
+
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A {@link LockedMemoryPool locked} {@link MemoryPool} whose pages are
+ * inaccessible ({@code PROT_NONE}) while they are at rest.
+ *
+ * <p>A page is only made accessible while at least one access to it is in
+ * progress (see {@link #beginAccess(Pointer, long)}). Accesses are reference
+ * counted per page, so that concurrent accesses to data on the same page only
+ * require a single pair of {@code mprotect} calls.</p>
+ *
+ * @author  Leon Linhart
+ */
+public final class GuardedMemoryPool extends MemoryPool {
+
+    /**
+     * Reserves a new pool of (at least) the given size.
+     *
+     * @param size  the size of the pool in bytes
+     *
+     * @return  the new pool
+     *
+     * @throws RuntimeException if the pool could not be reserved
+     */
+    public static GuardedMemoryPool reserve(long size) {
+        int chunks = chunks(size);
+        LibCAPI.size_t length = new LibCAPI.size_t((long) chunks * CHUNK_SIZE);
+
+        Pointer base = LockedMemoryPool.mapLocked(length);
+
+        if (LibCExt.INSTANCE.mprotect(base, length, Mman.PROT_NONE) != 0) {
+            int code = Native.getLastError();
+
+            LibCExt.INSTANCE.munlock(base, length);
+            LibCExt.INSTANCE.munmap(base, length);
+
+            throw new RuntimeException("mprotect produced unexpected error[" + code + "]");
+        }
+
+        return new GuardedMemoryPool(base, chunks, LibCExt.INSTANCE.getpagesize());
+    }
+
+    private final ReentrantLock accessLock = new ReentrantLock();
+
+    private final int pageSize;
+    private final int[] accesses;
+
+    private GuardedMemoryPool(Pointer base, int chunks, int pageSize) {
+        super(base, chunks);
+        this.pageSize = pageSize;
+        this.accesses = new int[Math.toIntExact((long) chunks * CHUNK_SIZE / pageSize)];
+    }
+
+    @Override
+    public void beginAccess(Pointer address, long size) {
+        int first = this.page(address, 0);
+        int last = this.page(address, size - 1);
+
+        this.accessLock.lock();
+
+        try {
+            int page = first;
+
+            try {
+                int run = -1;
+
+                for (; page <= last; page++) {
+                    if (this.accesses[page]++ == 0) {
+                        if (run == -1) run = page;
+                    } else if (run != -1) {
+                        this.protect(run, page, Mman.PROT_READ | Mman.PROT_WRITE);
+                        run = -1;
+                    }
+                }
+
+                if (run != -1) this.protect(run, last + 1, Mman.PROT_READ | Mman.PROT_WRITE);
+            } catch (RuntimeException e) {
+                // Roll back the accesses that have already been counted.
+                this.endAccess(first, Math.min(page, last));
+                throw e;
+            }
+        } finally {
+            this.accessLock.unlock();
+        }
+    }
+
+    @Override
+    public void endAccess(Pointer address, long size) {
+        int first = this.page(address, 0);
+        int last = this.page(address, size - 1);
+
+        this.accessLock.lock();
+
+        try {
+            this.endAccess(first, last);
+        } finally {
+            this.accessLock.unlock();
+        }
+    }
+
+    private void endAccess(int first, int last) {
+        int run = -1;
+
+        for (int page = first; page <= last; page++) {
+            assert (this.accesses[page] > 0);
+
+            if (--this.accesses[page] == 0) {
+                if (run == -1) run = page;
+            } else if (run != -1) {
+                this.protect(run, page, Mman.PROT_NONE);
+                run = -1;
+            }
+        }
+
+        if (run != -1) this.protect(run, last + 1, Mman.PROT_NONE);
+    }
+
+    private int page(Pointer address, long offset) {
+        long position = Pointer.nativeValue(address) + offset - Pointer.nativeValue(this.base);
+        assert (position >= 0 && position < (long) this.accesses.length * this.pageSize);
+
+        return (int) (position / this.pageSize);
+    }
+
+    private void protect(int from, int to, int prot) {
+        Pointer address = this.base.share((long) from * this.pageSize);
+        LibCAPI.size_t length = new LibCAPI.size_t((long) (to - from) * this.pageSize);
+
+        if (LibCExt.INSTANCE.mprotect(address, length, prot) != 0) {
+            throw new RuntimeException("mprotect produced unexpected error[" + Native.getLastError() + "]");
+        }
+    }
+
+    @Override
+    void release() {
+        LibCAPI.size_t length = new LibCAPI.size_t((long) this.chunks * CHUNK_SIZE);
+
+        LibCExt.INSTANCE.munlock(this.base, length);
+        LibCExt.INSTANCE.munmap(this.base, length);
+    }
+
+}
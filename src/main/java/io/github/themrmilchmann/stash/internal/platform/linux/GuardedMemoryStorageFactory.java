@@ -0,0 +1,53 @@
+/*
+ * Copyright (c) 2022 Leon Linhart
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package io.github.themrmilchmann.stash.internal.platform.linux;
+
+import io.github.themrmilchmann.stash.internal.platform.universal.OffHeapStorage;
+
+/**
+ * A factory for {@link OffHeapStorage} instances that keep their data in
+ * process-wide {@link GuardedMemoryPool guarded memory pools}.
+ *
+ * <p>In addition to the guarantees of {@link LockedMemoryStorageFactory}, the
+ * data of the created storages is inaccessible while it is at rest. Only the
+ * pages that hold the data of a storage are made accessible while the storage
+ * is read from or written to. If the amount of locked memory reaches
+ * {@code RLIMIT_MEMLOCK}, further writes fail with an {@link OutOfMemoryError}
+ * (see {@link PooledMemorySource}).</p>
+ *
+ * <p>Every access to a storage changes the protection of its pages, and all
+ * changes are serialized by the lock of the pool. Thus, this factory is ranked
+ * after {@link LockedMemoryStorageFactory} and is usually only used when it is
+ * {@link io.github.themrmilchmann.stash.Stash.Builder#withStorageFactory(io.github.themrmilchmann.stash.StorageFactory) set explicitly}.</p>
+ *
+ * @author  Leon Linhart
+ */
+public final class GuardedMemoryStorageFactory extends PooledStorageFactory {
+
+    // The pools are shared by all stashes to keep the amount of locked memory low.
+    private static final PooledMemorySource SOURCE = new PooledMemorySource(GuardedMemoryPool::reserve);
+
+    public GuardedMemoryStorageFactory() {
+        super(SOURCE, () -> true);
+    }
+
+}
\ No newline at end of file
@@ -0,0 +1,117 @@
+/*
+ * Copyright (c) 2022 Leon Linhart
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package io.github.themrmilchmann.stash.internal.platform.linux;
+
+import com.sun.jna.Native;
+import com.sun.jna.Pointer;
+import io.github.themrmilchmann.stash.internal.jna.linux.LibCExt;
+
+import javax.annotation.Nullable;
+
+/**
+ * Thin wrappers around the {@code add_key} and {@code keyctl} system calls.
+ *
+ * <p>The system calls are invoked directly (instead of via libkeyutils) since
+ * libkeyutils is not installed by default on most distributions. The numbers
+ * of the system calls depend on the architecture.</p>
+ *
+ * @author  Leon Linhart
+ */
+final class Keyctl {
+
+    /** The special serial of the calling process's keyring. */
+    static final int KEY_SPEC_PROCESS_KEYRING = -2;
+
+    /** The maximum size of the payload of a key of type {@code "user"}. */
+    static final int USER_KEY_MAX_PAYLOAD = 32767;
+
+    private static final int KEYCTL_UPDATE      = 2;
+    private static final int KEYCTL_READ        = 11;
+    private static final int KEYCTL_INVALIDATE  = 21;
+
+    private static final String KEY_TYPE_USER = "user";
+
+    @Nullable
+    private static final long[] SYSCALL_NUMBERS = switch (System.getProperty("os.arch")) {
+        case "amd64", "x86_64" -> new long[] { 248, 250 };
+        case "aarch64", "riscv64" -> new long[] { 217, 219 };
+        default -> null;
+    };
+
+    /**
+     * {@return whether the system calls are known for the current architecture}
+     */
+    static boolean isArchitectureSupported() {
+        return SYSCALL_NUMBERS != null;
+    }
+
+    /**
+     * Adds a new key of type {@code "user"} to the given keyring.
+     *
+     * @return  the serial of the new key
+     */
+    static int addKey(String description, Pointer payload, int length, int keyring) {
+        long serial = syscall(0, KEY_TYPE_USER, description, payload, (long) length, keyring);
+        if (serial < 0) throw new RuntimeException("add_key produced unexpected error[" + Native.getLastError() + "]");
+
+        return (int) serial;
+    }
+
+    /**
+     * Replaces the payload of the key with the given serial.
+     */
+    static void update(int serial, Pointer payload, int length) {
+        if (syscall(1, KEYCTL_UPDATE, serial, payload, (long) length) < 0) {
+            throw new RuntimeException("keyctl(KEYCTL_UPDATE) produced unexpected error[" + Native.getLastError() + "]");
+        }
+    }
+
+    /**
+     * Reads the payload of the key with the given serial into the given buffer.
+     *
+     * @return  the size of the payload
+     */
+    static int read(int serial, Pointer buffer, int length) {
+        long size = syscall(1, KEYCTL_READ, serial, buffer, (long) length);
+        if (size < 0) throw new RuntimeException("keyctl(KEYCTL_READ) produced unexpected error[" + Native.getLastError() + "]");
+
+        return (int) size;
+    }
+
+    /**
+     * Invalidates the key with the given serial. Its payload is destroyed by the
+     * kernel's garbage collector.
+     */
+    static void invalidate(int serial) {
+        if (syscall(1, KEYCTL_INVALIDATE, serial) < 0) {
+            throw new RuntimeException("keyctl(KEYCTL_INVALIDATE) produced unexpected error[" + Native.getLastError() + "]");
+        }
+    }
+
+    private static long syscall(int index, Object... args) {
+        if (SYSCALL_NUMBERS == null) throw new IllegalStateException("The kernel keyring is not supported on " + System.getProperty("os.arch"));
+        return LibCExt.INSTANCE.syscall(SYSCALL_NUMBERS[index], args);
+    }
+
+    private Keyctl() {}
+
+}
@@ -0,0 +1,166 @@
+/*
+ * Copyright (c) 2022 Leon Linhart
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package io.github.themrmilchmann.stash.internal.platform.linux;
+
+import com.sun.jna.Native;
+import com.sun.jna.Pointer;
+import io.github.themrmilchmann.stash.BufferStorage;
+import io.github.themrmilchmann.stash.Storage;
+import io.github.themrmilchmann.stash.internal.ScratchBufferPool;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+
+/**
+ * A {@link Storage} implementation that keeps its data in the Linux kernel
+ * keyring. The data is never stored in the address space of the process, but
+ * only copied into (short-lived) native buffers while it is read or written.
+ *
+ * <p>The serial of the key that holds the data is cached, so that a read or a
+ * write only requires a single system call. The key is created by the first
+ * non-empty write and invalidated when the storage is disposed.</p>
+ *
+ * <p>Direct buffers are passed to the kernel as they are. Data in heap buffers
+ * is copied through a scratch buffer that is shared by all storages of a
+ * factory and zeroed right after use.</p>
+ *
+ * @author  Leon Linhart
+ */
+public final class KeyringStorage implements BufferStorage {
+
+    private final String description;
+    private final int keyring;
+    private final ScratchBufferPool scratchBuffers;
+
+    private int serial;
+    private int size;
+
+    KeyringStorage(String description, int keyring, ScratchBufferPool scratchBuffers) {
+        this.description = description;
+        this.keyring = keyring;
+        this.scratchBuffers = scratchBuffers;
+    }
+
+    private static int checkSize(int size) {
+        if (size > Keyctl.USER_KEY_MAX_PAYLOAD) {
+            throw new IllegalArgumentException("Data exceeds the maximum size of a key (" + size + " > " + Keyctl.USER_KEY_MAX_PAYLOAD + ")");
+        }
+
+        return size;
+    }
+
+    // Returns the address of the given direct buffer's current position.
+    private static Pointer addressOf(ByteBuffer buffer) {
+        return Native.getDirectBufferPointer(buffer).share(buffer.position());
+    }
+
+    @Override
+    public void dispose() {
+        if (this.serial != 0) {
+            Keyctl.invalidate(this.serial);
+            this.serial = 0;
+        }
+
+        this.size = 0;
+    }
+
+    @Override
+    public int size() {
+        return this.size;
+    }
+
+    @Override
+    public void read(ByteBuffer dst) {
+        if (dst.remaining() < this.size) throw new BufferOverflowException();
+        if (this.size == 0) return;
+
+        if (dst.isDirect() && !dst.isReadOnly()) {
+            this.read(addressOf(dst));
+            dst.position(dst.position() + this.size);
+
+            return;
+        }
+
+        ByteBuffer buffer = this.scratchBuffers.acquire(this.size);
+
+        try {
+            this.read(addressOf(buffer));
+            dst.put(buffer);
+        } finally {
+            this.scratchBuffers.release(buffer);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>Reading from the keyring never removes the data. Thus, this method is
+     * equivalent to {@link #read(ByteBuffer)}.</p>
+     */
+    @Override
+    public boolean peek(ByteBuffer dst) {
+        this.read(dst);
+        return true;
+    }
+
+    private void read(Pointer address) {
+        int size = Keyctl.read(this.serial, address, this.size);
+        if (size != this.size) throw new IllegalStateException("Key has been modified externally");
+    }
+
+    @Override
+    public void write(ByteBuffer src) {
+        int length = checkSize(src.remaining());
+
+        if (length == 0) {
+            this.dispose();
+            return;
+        }
+
+        if (src.isDirect()) {
+            this.write(addressOf(src), length);
+            src.position(src.position() + length);
+
+            return;
+        }
+
+        ByteBuffer buffer = this.scratchBuffers.acquire(length);
+
+        try {
+            buffer.put(src).flip();
+            this.write(addressOf(buffer), length);
+        } finally {
+            this.scratchBuffers.release(buffer);
+        }
+    }
+
+    private void write(Pointer address, int length) {
+        if (this.serial != 0) {
+            Keyctl.update(this.serial, address, length);
+        } else {
+            this.serial = Keyctl.addKey(this.description, address, length, this.keyring);
+        }
+
+        this.size = length;
+    }
+
+}
\ No newline at end of file
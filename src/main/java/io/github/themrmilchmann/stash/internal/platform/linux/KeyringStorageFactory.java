@@ -0,0 +1,71 @@
+/*
+ * Copyright (c) 2022 Leon Linhart
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package io.github.themrmilchmann.stash.internal.platform.linux;
+
+import com.sun.jna.Memory;
+import io.github.themrmilchmann.stash.StorageFactory;
+import io.github.themrmilchmann.stash.internal.ScratchBufferPool;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A factory for {@link KeyringStorage} instances that keep their data in the
+ * keyring of the current process.
+ *
+ * <p>The kernel limits the number of keys and the total size of their payloads
+ * per user (see {@code /proc/sys/kernel/keys/maxkeys} and
+ * {@code /proc/sys/kernel/keys/maxbytes}). Thus, this factory is not
+ * {@link java.util.ServiceLoader discovered} automatically and must be set
+ * explicitly.</p>
+ *
+ * @author  Leon Linhart
+ */
+public final class KeyringStorageFactory implements StorageFactory<KeyringStorage> {
+
+    private static final AtomicLong COUNTER = new AtomicLong();
+
+    private final ScratchBufferPool scratchBuffers = new ScratchBufferPool();
+
+    @Override
+    public KeyringStorage create() {
+        return new KeyringStorage("stash:" + ProcessHandle.current().pid() + ":" + COUNTER.incrementAndGet(), Keyctl.KEY_SPEC_PROCESS_KEYRING, this.scratchBuffers);
+    }
+
+    @Override
+    public boolean isSupported() {
+        String os = System.getProperty("os.name");
+        if (!os.contains("Linux") || !Keyctl.isArchitectureSupported()) return false;
+
+        // Probe the keyring since add_key may be missing (CONFIG_KEYS) or restricted (e.g. by seccomp).
+        try (Memory memory = new Memory(1)) {
+            memory.clear();
+
+            int serial = Keyctl.addKey("stash:probe", memory, 1, Keyctl.KEY_SPEC_PROCESS_KEYRING);
+            Keyctl.invalidate(serial);
+        } catch (RuntimeException | UnsatisfiedLinkError e) {
+            return false;
+        }
+
+        return true;
+    }
+
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright (c) 2022 Leon Linhart
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package io.github.themrmilchmann.stash.internal.platform.linux;
+
+import com.sun.jna.Native;
+import com.sun.jna.Pointer;
+import com.sun.jna.platform.linux.ErrNo;
+import com.sun.jna.platform.linux.Mman;
+import com.sun.jna.platform.unix.LibCAPI;
+import io.github.themrmilchmann.stash.internal.jna.linux.LibCExt;
+
+/**
+ * A {@link MemoryPool} whose region is locked into RAM using {@code mlock} and
+ * excluded from core dumps ({@code MADV_DONTDUMP}) and child processes
+ * ({@code MADV_WIPEONFORK}).
+ *
+ * <p>Since all of this happens once when the pool is reserved, serving memory
+ * from the pool does not require any system calls. The amount of locked memory
+ * is bounded by the size of the pool.</p>
+ *
+ * @author  Leon Linhart
+ */
+public final class LockedMemoryPool extends MemoryPool {
+
+    /**
+     * Reserves a new pool of (at least) the given size.
+     *
+     * @param size  the size of the pool in bytes
+     *
+     * @return  the new pool
+     *
+     * @throws RuntimeException if the pool could not be reserved
+     */
+    public static LockedMemoryPool reserve(long size) {
+        int chunks = chunks(size);
+        Pointer base = mapLocked(new LibCAPI.size_t((long) chunks * CHUNK_SIZE));
+
+        return new LockedMemoryPool(base, chunks);
+    }
+
+    /**
+     * Maps a private, readable and writable region of the given size that is
+     * locked into RAM and excluded from core dumps and child processes.
+     *
+     * @param length    the size of the region in bytes
+     *
+     * @return  the base address of the region
+     *
+     * @throws RuntimeException if the region could not be mapped
+     */
+    static Pointer mapLocked(LibCAPI.size_t length) {
+        Pointer base = LibCExt.INSTANCE.mmap(null, length, Mman.PROT_READ | Mman.PROT_WRITE, Mman.MAP_PRIVATE | Mman.MAP_ANONYMOUS, -1, 0);
+        if (base == null || Mman.MAP_FAILED.equals(base)) throw new RuntimeException("mmap produced unexpected error[" + Native.getLastError() + "]");
+
+        try {
+            if (LibCExt.INSTANCE.mlock(base, length) != 0) {
+                throw new RuntimeException("mlock produced unexpected error[" + Native.getLastError() + "]");
+            }
+
+            if (LibCExt.INSTANCE.madvise(base, length, LibCExt.MADV_DONTDUMP) != 0) {
+                throw new RuntimeException("madvise(MADV_DONTDUMP) produced unexpected error[" + Native.getLastError() + "]");
+            }
+
+            // MADV_WIPEONFORK is only available since Linux 4.14 and fails with EINVAL on older kernels.
+            if (LibCExt.INSTANCE.madvise(base, length, LibCExt.MADV_WIPEONFORK) != 0) {
+                int code = Native.getLastError();
+                if (code != ErrNo.EINVAL) throw new RuntimeException("madvise(MADV_WIPEONFORK) produced unexpected error[" + code + "]");
+            }
+        } catch (RuntimeException e) {
+            LibCExt.INSTANCE.munmap(base, length);
+            throw e;
+        }
+
+        return base;
+    }
+
+    private LockedMemoryPool(Pointer base, int chunks) {
+        super(base, chunks);
+    }
+
+    @Override
+    void release() {
+        LibCAPI.size_t length = new LibCAPI.size_t((long) this.chunks * CHUNK_SIZE);
+
+        LibCExt.INSTANCE.munlock(this.base, length);
+        LibCExt.INSTANCE.munmap(this.base, length);
+    }
+
+}
\ No newline at end of file
@@ -0,0 +1,46 @@
+/*
+ * Copyright (c) 2022 Leon Linhart
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package io.github.themrmilchmann.stash.internal.platform.linux;
+
+import io.github.themrmilchmann.stash.internal.platform.universal.OffHeapStorage;
+
+/**
+ * A factory for {@link OffHeapStorage} instances that keep their data in
+ * process-wide {@link LockedMemoryPool locked memory pools}.
+ *
+ * <p>The data of the created storages is never swapped to disk, does not show
+ * up in core dumps, and is not inherited by child processes. If the amount of
+ * locked memory reaches {@code RLIMIT_MEMLOCK}, further writes fail with an
+ * {@link OutOfMemoryError} (see {@link PooledMemorySource}).</p>
+ *
+ * @author  Leon Linhart
+ */
+public final class LockedMemoryStorageFactory extends PooledStorageFactory {
+
+    // The pools are shared by all stashes to keep the amount of locked memory low.
+    private static final PooledMemorySource SOURCE = new PooledMemorySource(LockedMemoryPool::reserve);
+
+    public LockedMemoryStorageFactory() {
+        super(SOURCE, () -> true);
+    }
+
+}
\ No newline at end of file
@@ -0,0 +1,178 @@
+/*
+ * Copyright (c) 2022 Leon Linhart
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package io.github.themrmilchmann.stash.internal.platform.linux;
+
+import com.sun.jna.Pointer;
+import io.github.themrmilchmann.stash.internal.SlabAllocator;
+
+import javax.annotation.Nullable;
+import java.util.BitSet;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A {@link SlabAllocator.MemorySource} that serves memory from a single,
+ * fixed-size region that is mapped up front.
+ *
+ * <p>Memory is handed out in chunks of {@value #CHUNK_SIZE} bytes. Serving
+ * memory from the pool does not require any system calls, and the pool never
+ * grows. (A {@link PooledMemorySource} combines multiple pools to serve an
+ * unbounded amount of memory.)</p>
+ *
+ * @author  Leon Linhart
+ */
+abstract class MemoryPool implements SlabAllocator.MemorySource, AutoCloseable {
+
+    static final int CHUNK_SIZE = 64 * 1024;
+
+    static int chunks(long size) {
+        return Math.toIntExact((size + CHUNK_SIZE - 1) / CHUNK_SIZE);
+    }
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    final Pointer base;
+    final int chunks;
+
+    private final BitSet usedChunks;
+    private boolean isClosed;
+
+    MemoryPool(Pointer base, int chunks) {
+        this.base = base;
+        this.chunks = chunks;
+        this.usedChunks = new BitSet(chunks);
+    }
+
+    /**
+     * Releases the region of this pool. This method is called at most once,
+     * after the region has been zeroed.
+     */
+    abstract void release();
+
+    @Override
+    public final Pointer allocate(long size) {
+        Pointer pointer = this.tryAllocate(size);
+        if (pointer == null) throw new OutOfMemoryError("Memory pool is exhausted (requested " + size + " bytes)");
+
+        return pointer;
+    }
+
+    /**
+     * Attempts to allocate a block of the given size from this pool.
+     *
+     * @param size  the size of the block in bytes
+     *
+     * @return  the address of the block, or {@code null} if this pool is
+     *          exhausted
+     */
+    @Nullable
+    final Pointer tryAllocate(long size) {
+        int count = chunks(size);
+
+        this.lock.lock();
+
+        try {
+            if (this.isClosed) throw new IllegalStateException("Memory pool has been closed");
+
+            int start = this.usedChunks.nextClearBit(0);
+
+            while (start + count <= this.chunks) {
+                int end = this.usedChunks.nextSetBit(start);
+
+                if (end == -1 || end - start >= count) {
+                    this.usedChunks.set(start, start + count);
+                    return this.base.share((long) start * CHUNK_SIZE);
+                }
+
+                start = this.usedChunks.nextClearBit(end);
+            }
+        } finally {
+            this.lock.unlock();
+        }
+
+        return null;
+    }
+
+    @Override
+    public final void free(Pointer pointer, long size) {
+        long offset = Pointer.nativeValue(pointer) - Pointer.nativeValue(this.base);
+        assert (offset >= 0 && offset % CHUNK_SIZE == 0);
+
+        int start = (int) (offset / CHUNK_SIZE);
+
+        this.lock.lock();
+
+        try {
+            this.usedChunks.clear(start, start + chunks(size));
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * {@return whether the given address lies within the region of this pool}
+     *
+     * @param address   the address to check
+     */
+    final boolean contains(Pointer address) {
+        long offset = Pointer.nativeValue(address) - Pointer.nativeValue(this.base);
+        return offset >= 0 && offset < (long) this.chunks * CHUNK_SIZE;
+    }
+
+    /**
+     * {@return whether no memory that has been served from this pool is in use}
+     */
+    final boolean isEmpty() {
+        this.lock.lock();
+
+        try {
+            return this.usedChunks.isEmpty();
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * Zeroes and releases the pool.
+     *
+     * <p>Memory that has been served from the pool must not be used after the
+     * pool has been closed.</p>
+     */
+    @Override
+    public final void close() {
+        this.lock.lock();
+
+        try {
+            if (this.isClosed) return;
+            this.isClosed = true;
+
+            long size = (long) this.chunks * CHUNK_SIZE;
+
+            // The region is released right after, so the access is never ended.
+            this.beginAccess(this.base, size);
+            this.base.setMemory(0, size, (byte) 0);
+            this.release();
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+}
@@ -0,0 +1,205 @@
+/*
+ * Copyright (c) 2022 Leon Linhart
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package io.github.themrmilchmann.stash.internal.platform.linux;
+
+import com.sun.jna.Pointer;
+import io.github.themrmilchmann.stash.internal.SlabAllocator;
+
+import javax.annotation.Nullable;
+import java.util.Arrays;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongFunction;
+
+/**
+ * A {@link SlabAllocator.MemorySource} that serves memory from a growing set of
+ * {@link MemoryPool memory pools}.
+ *
+ * <p>The first pool is reserved lazily and kept for the lifetime of the
+ * source. Whenever all pools are exhausted, another pool that is large enough
+ * for the request is reserved. Additional pools are released again as soon as
+ * they become empty.</p>
+ *
+ * <p>Reserving a pool may fail once a resource limit has been reached (for
+ * example, {@code RLIMIT_MEMLOCK}). In this case, the allocation fails with an
+ * {@link OutOfMemoryError} until memory has been returned to the pools. Memory
+ * is never served from an unprotected source instead.</p>
+ *
+ * @author  Leon Linhart
+ */
+final class PooledMemorySource implements SlabAllocator.MemorySource {
+
+    /*
+     * 1 MiB fits well below the default RLIMIT_MEMLOCK of most current
+     * distributions (8 MiB), and is enough for several thousand small secrets.
+     */
+    static final long POOL_SIZE = 1024 * 1024;
+
+    private static final MemoryPool[] NO_POOLS = new MemoryPool[0];
+
+    private final LongFunction<? extends MemoryPool> reservation;
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    // Copy-on-write to keep lookups lock-free. The first pool is never released.
+    private volatile MemoryPool[] pools = NO_POOLS;
+
+    @Nullable private volatile Boolean isAvailable;
+
+    /**
+     * Creates a new source that reserves its pools using the given function.
+     *
+     * @param reservation   reserves a pool of (at least) the given size, or
+     *                      throws a {@link RuntimeException} if the pool could
+     *                      not be reserved
+     */
+    PooledMemorySource(LongFunction<? extends MemoryPool> reservation) {
+        this.reservation = reservation;
+    }
+
+    /**
+     * {@return whether the first pool of this source could be reserved}
+     *
+     * <p>The first pool is reserved by the first call to this method. If it
+     * cannot be reserved, this source is considered unavailable forever.</p>
+     */
+    boolean isAvailable() {
+        Boolean isAvailable = this.isAvailable;
+        if (isAvailable != null) return isAvailable;
+
+        this.lock.lock();
+
+        try {
+            if (this.isAvailable == null) {
+                try {
+                    this.pools = new MemoryPool[] { this.reservation.apply(POOL_SIZE) };
+                    this.isAvailable = true;
+                } catch (RuntimeException | LinkageError e) {
+                    this.isAvailable = false;
+                }
+            }
+
+            return this.isAvailable;
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    @Override
+    public Pointer allocate(long size) {
+        if (!this.isAvailable()) throw new IllegalStateException("Memory pool is not available");
+
+        this.lock.lock();
+
+        try {
+            MemoryPool[] pools = this.pools;
+
+            for (MemoryPool pool : pools) {
+                Pointer pointer = pool.tryAllocate(size);
+                if (pointer != null) return pointer;
+            }
+
+            MemoryPool pool;
+
+            try {
+                pool = this.reservation.apply(Math.max(POOL_SIZE, size));
+            } catch (RuntimeException e) {
+                // The resource limit has been reached.
+                OutOfMemoryError error = new OutOfMemoryError("Memory pools are exhausted (requested " + size + " bytes)");
+                error.initCause(e);
+
+                throw error;
+            }
+
+            Pointer pointer = pool.tryAllocate(size);
+            assert (pointer != null);
+
+            MemoryPool[] grown = Arrays.copyOf(pools, pools.length + 1);
+            grown[pools.length] = pool;
+            this.pools = grown;
+
+            return pointer;
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    @Override
+    public void free(Pointer pointer, long size) {
+        MemoryPool[] pools = this.pools;
+
+        for (int i = 0; i < pools.length; i++) {
+            MemoryPool pool = pools[i];
+            if (!pool.contains(pointer)) continue;
+
+            pool.free(pointer, size);
+            if (i > 0 && pool.isEmpty()) this.release(pool);
+
+            return;
+        }
+
+        throw new IllegalArgumentException("Memory was not allocated by this source");
+    }
+
+    @Override
+    public void beginAccess(Pointer address, long size) {
+        MemoryPool pool = this.poolOf(address);
+        if (pool != null) pool.beginAccess(address, size);
+    }
+
+    @Override
+    public void endAccess(Pointer address, long size) {
+        MemoryPool pool = this.poolOf(address);
+        if (pool != null) pool.endAccess(address, size);
+    }
+
+    @Nullable
+    private MemoryPool poolOf(Pointer address) {
+        for (MemoryPool pool : this.pools) {
+            if (pool.contains(address)) return pool;
+        }
+
+        return null;
+    }
+
+    private void release(MemoryPool pool) {
+        this.lock.lock();
+
+        try {
+            // Allocations only happen while the lock is held, so the pool cannot be used again once it is empty.
+            if (!pool.isEmpty()) return;
+
+            MemoryPool[] pools = this.pools;
+            int index = Arrays.asList(pools).indexOf(pool);
+            if (index == -1) return;
+
+            MemoryPool[] shrunk = new MemoryPool[pools.length - 1];
+            System.arraycopy(pools, 0, shrunk, 0, index);
+            System.arraycopy(pools, index + 1, shrunk, index, pools.length - index - 1);
+            this.pools = shrunk;
+
+            pool.close();
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+}
\ No newline at end of file
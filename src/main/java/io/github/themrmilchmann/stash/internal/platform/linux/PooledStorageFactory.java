@@ -0,0 +1,126 @@
+/*
+ * Copyright (c) 2022 Leon Linhart
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package io.github.themrmilchmann.stash.internal.platform.linux;
+
+import com.sun.jna.Native;
+import io.github.themrmilchmann.stash.StorageFactory;
+import io.github.themrmilchmann.stash.internal.platform.universal.OffHeapStorage;
+import io.github.themrmilchmann.stash.internal.platform.universal.OffHeapStorageFactory;
+
+import javax.annotation.Nullable;
+import java.security.SecureRandom;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BooleanSupplier;
+
+/**
+ * A base class for factories of {@link OffHeapStorage} instances that keep
+ * their data in a process-wide {@link PooledMemorySource}.
+ *
+ * <p>The storages are created by an {@link OffHeapStorageFactory} that is
+ * created lazily, once the first pool of the source has been reserved.
+ * Factories are only supported on 64-bit Linux systems, if the platform probe
+ * of the backend succeeds and the first pool can be reserved.</p>
+ *
+ * @author  Leon Linhart
+ */
+abstract class PooledStorageFactory implements StorageFactory<OffHeapStorage>, AutoCloseable {
+
+    private final PooledMemorySource source;
+    private final BooleanSupplier isPlatformSupported;
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    @Nullable private volatile OffHeapStorageFactory delegate;
+
+    /**
+     * Creates a new factory.
+     *
+     * @param source                the process-wide source of the backend
+     * @param isPlatformSupported   checks whether the backend may be available
+     *                              on the current platform, before the first
+     *                              pool is reserved
+     */
+    PooledStorageFactory(PooledMemorySource source, BooleanSupplier isPlatformSupported) {
+        this.source = source;
+        this.isPlatformSupported = isPlatformSupported;
+    }
+
+    @Override
+    public final OffHeapStorage create() {
+        return this.getDelegate().create();
+    }
+
+    @Override
+    public final OffHeapStorage create(SecureRandom random) {
+        return this.getDelegate().create(random);
+    }
+
+    @Override
+    public final boolean isSupported() {
+        String os = System.getProperty("os.name");
+        if (!os.contains("Linux") || Native.POINTER_SIZE != 8 || !this.isPlatformSupported.getAsBoolean()) return false;
+
+        try {
+            this.getDelegate();
+        } catch (RuntimeException | UnsatisfiedLinkError e) {
+            return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * Returns the memory of the storages created by this factory to the shared
+     * pools.
+     *
+     * <p>All storages created by this factory must have been disposed.</p>
+     */
+    @Override
+    public final void close() {
+        this.lock.lock();
+
+        try {
+            if (this.delegate != null) this.delegate.close();
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    private OffHeapStorageFactory getDelegate() {
+        OffHeapStorageFactory delegate = this.delegate;
+        if (delegate != null) return delegate;
+
+        this.lock.lock();
+
+        try {
+            if (this.delegate == null) {
+                if (!this.source.isAvailable()) throw new IllegalStateException("Memory pool is not available");
+                this.delegate = new OffHeapStorageFactory(this.source);
+            }
+
+            return this.delegate;
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+}
\ No newline at end of file
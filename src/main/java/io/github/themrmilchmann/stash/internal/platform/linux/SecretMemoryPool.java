@@ -0,0 +1,117 @@
+/*
+ * Copyright (c) 2022 Leon Linhart
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package io.github.themrmilchmann.stash.internal.platform.linux;
+
+import com.sun.jna.Native;
+import com.sun.jna.Pointer;
+import com.sun.jna.platform.linux.Mman;
+import com.sun.jna.platform.unix.LibCAPI;
+import io.github.themrmilchmann.stash.internal.jna.linux.LibCExt;
+
+import java.util.Set;
+
+/**
+ * A {@link MemoryPool} whose region is backed by a {@code memfd_secret} file
+ * descriptor (available since Linux 5.14).
+ *
+ * <p>Secret memory is removed from the kernel's direct map, is implicitly
+ * locked, and cannot be accessed by any other process (including the kernel
+ * itself via {@code /proc/<pid>/mem} or {@code ptrace}). The region is mapped
+ * once when the pool is reserved and the file descriptor is closed right away,
+ * so that serving memory from the pool does not require any system calls.</p>
+ *
+ * @author  Leon Linhart
+ */
+public final class SecretMemoryPool extends MemoryPool {
+
+    // Architectures that use the generic system call table (and thus share the number of memfd_secret).
+    private static final Set<String> SUPPORTED_ARCHITECTURES = Set.of("amd64", "x86_64", "aarch64", "riscv64");
+
+    /**
+     * Returns whether {@code memfd_secret} may be available on the current
+     * architecture.
+     *
+     * <p>Even if this method returns {@code true}, the system call may still be
+     * missing or disabled by the kernel. This can only be determined by
+     * {@link #reserve(long) reserving} a pool.</p>
+     *
+     * @return  whether {@code memfd_secret} may be available
+     */
+    static boolean isArchitectureSupported() {
+        return SUPPORTED_ARCHITECTURES.contains(System.getProperty("os.arch"));
+    }
+
+    /**
+     * Reserves a new pool of (at least) the given size.
+     *
+     * @param size  the size of the pool in bytes
+     *
+     * @return  the new pool
+     *
+     * @throws IllegalStateException    if {@code memfd_secret} is not supported
+     *                                  on the current system
+     * @throws RuntimeException         if the pool could not be reserved
+     */
+    public static SecretMemoryPool reserve(long size) {
+        if (!isArchitectureSupported()) throw new IllegalStateException("memfd_secret is not supported on " + System.getProperty("os.arch"));
+
+        int chunks = chunks(size);
+        long length = (long) chunks * CHUNK_SIZE;
+
+        int fd = (int) LibCExt.INSTANCE.syscall(LibCExt.SYS_memfd_secret, 0);
+
+        if (fd < 0) {
+            /*
+             * ENOSYS is reported by kernels that predate memfd_secret or have
+             * been built without it, and some kernels additionally require it
+             * to be enabled explicitly (secretmem.enable=1).
+             */
+            throw new IllegalStateException("memfd_secret produced unexpected error[" + Native.getLastError() + "]");
+        }
+
+        Pointer base;
+
+        try {
+            if (LibCExt.INSTANCE.ftruncate(fd, length) != 0) {
+                throw new RuntimeException("ftruncate produced unexpected error[" + Native.getLastError() + "]");
+            }
+
+            base = LibCExt.INSTANCE.mmap(null, new LibCAPI.size_t(length), Mman.PROT_READ | Mman.PROT_WRITE, Mman.MAP_SHARED, fd, 0);
+            if (base == null || Mman.MAP_FAILED.equals(base)) throw new RuntimeException("mmap produced unexpected error[" + Native.getLastError() + "]");
+        } finally {
+            // The mapping keeps the secret memory alive.
+            LibCExt.INSTANCE.close(fd);
+        }
+
+        return new SecretMemoryPool(base, chunks);
+    }
+
+    private SecretMemoryPool(Pointer base, int chunks) {
+        super(base, chunks);
+    }
+
+    @Override
+    void release() {
+        LibCExt.INSTANCE.munmap(this.base, new LibCAPI.size_t((long) this.chunks * CHUNK_SIZE));
+    }
+
+}
@@ -0,0 +1,53 @@
+/*
+ * Copyright (c) 2022 Leon Linhart
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package io.github.themrmilchmann.stash.internal.platform.linux;
+
+import io.github.themrmilchmann.stash.internal.platform.universal.OffHeapStorage;
+
+/**
+ * A factory for {@link OffHeapStorage} instances that keep their data in
+ * process-wide {@link SecretMemoryPool secret memory pools}.
+ *
+ * <p>The data of the created storages is never swapped to disk, is removed
+ * from the kernel's direct map, and cannot be read by other processes. This
+ * factory is only supported if the kernel provides {@code memfd_secret}.
+ * Otherwise, a {@link LockedMemoryStorageFactory} is usually the next best
+ * option. If the amount of secret memory reaches {@code RLIMIT_MEMLOCK},
+ * further writes fail with an {@link OutOfMemoryError} (see
+ * {@link PooledMemorySource}).</p>
+ *
+ * @author  Leon Linhart
+ */
+public final class SecretMemoryStorageFactory extends PooledStorageFactory {
+
+    /*
+     * The pools are shared by all stashes. Secret memory is implicitly locked
+     * and counts towards RLIMIT_MEMLOCK, just like locked memory. Pools cannot
+     * be reserved if memfd_secret is missing or disabled.
+     */
+    private static final PooledMemorySource SOURCE = new PooledMemorySource(SecretMemoryPool::reserve);
+
+    public SecretMemoryStorageFactory() {
+        super(SOURCE, SecretMemoryPool::isArchitectureSupported);
+    }
+
+}
\ No newline at end of file
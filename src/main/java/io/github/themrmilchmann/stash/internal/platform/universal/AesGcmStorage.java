@@ -0,0 +1,66 @@
+/*
+ * Copyright (c) 2022 Leon Linhart
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package io.github.themrmilchmann.stash.internal.platform.universal;
+
+import io.github.themrmilchmann.stash.Storage;
+import io.github.themrmilchmann.stash.internal.InstancePool;
+
+import javax.crypto.Cipher;
+import javax.crypto.KeyGenerator;
+import javax.crypto.spec.GCMParameterSpec;
+import java.security.SecureRandom;
+import java.security.spec.AlgorithmParameterSpec;
+
+/**
+ * A platform-independent {@link Storage} implementation that obscures the data
+ * by encrypting it with a random key using AES in Galois/Counter Mode. However,
+ * the key is stored in memory.
+ *
+ * <p>In contrast to {@link UniversalStorage}, the encrypted data is
+ * authenticated. Modifications of the encrypted data are thus detected when
+ * the storage is read. On most x86 and ARMv8 hardware, the JDK implements
+ * AES-GCM using CPU intrinsics which makes it considerably faster than
+ * ChaCha20.</p>
+ *
+ * <p>{@link Cipher} and {@link KeyGenerator} instances are borrowed from pools
+ * owned by the {@link AesGcmStorageFactory} for the duration of a single
+ * operation.</p>
+ *
+ * @author  Leon Linhart
+ */
+public final class AesGcmStorage extends HeapCipherStorage {
+
+    AesGcmStorage(InstancePool<Cipher> encryptionCiphers, InstancePool<Cipher> decryptionCiphers, InstancePool<KeyGenerator> keyGenerators, SecureRandom random) {
+        super(encryptionCiphers, decryptionCiphers, keyGenerators, random, AesGcmStorageFactory.IV_SIZE, AesGcmStorageFactory.TAG_SIZE);
+    }
+
+    @Override
+    AlgorithmParameterSpec createParameterSpec(byte[] iv) {
+        return new GCMParameterSpec(AesGcmStorageFactory.TAG_SIZE * Byte.SIZE, iv);
+    }
+
+    @Override
+    void initKeyGenerator(KeyGenerator keyGenerator, SecureRandom random) {
+        keyGenerator.init(AesGcmStorageFactory.KEY_SIZE, random);
+    }
+
+}
\ No newline at end of file
@@ -0,0 +1,101 @@
+/*
+ * Copyright (c) 2022 Leon Linhart
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package io.github.themrmilchmann.stash.internal.platform.universal;
+
+import io.github.themrmilchmann.stash.StorageFactory;
+import io.github.themrmilchmann.stash.internal.InstancePool;
+
+import javax.crypto.*;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+
+/**
+ * A factory for {@link AesGcmStorage} instances.
+ *
+ * @author  Leon Linhart
+ */
+public final class AesGcmStorageFactory implements StorageFactory<AesGcmStorage> {
+
+    static final String ALGORITHM = "AES";
+    static final String TRANSFORMATION = "AES/GCM/NoPadding";
+
+    static final int KEY_SIZE = 256;
+    static final int IV_SIZE = 12;
+    static final int TAG_SIZE = 16;
+
+    private static final int POOL_CAPACITY = Runtime.getRuntime().availableProcessors() * 2;
+
+    static Cipher createCipher() {
+        try {
+            return Cipher.getInstance(TRANSFORMATION);
+        } catch (NoSuchAlgorithmException | NoSuchPaddingException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static KeyGenerator createKeyGenerator() {
+        try {
+            return KeyGenerator.getInstance(ALGORITHM);
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /*
+     * Ciphers and key generators are pooled for the same reasons as in
+     * UniversalStorageFactory. Since a key is never reused, pooling ciphers
+     * for encryption separately is not strictly necessary for GCM, but it
+     * keeps the initialization state of the ciphers predictable.
+     */
+    private final InstancePool<Cipher> encryptionCiphers = new InstancePool<>(AesGcmStorageFactory::createCipher, POOL_CAPACITY);
+    private final InstancePool<Cipher> decryptionCiphers = new InstancePool<>(AesGcmStorageFactory::createCipher, POOL_CAPACITY);
+    private final InstancePool<KeyGenerator> keyGenerators = new InstancePool<>(AesGcmStorageFactory::createKeyGenerator, POOL_CAPACITY);
+
+    @Override
+    public AesGcmStorage create() {
+        return this.create(DefaultRandomHolder.RANDOM);
+    }
+
+    @Override
+    public AesGcmStorage create(SecureRandom random) {
+        return new AesGcmStorage(this.encryptionCiphers, this.decryptionCiphers, this.keyGenerators, random);
+    }
+
+    @Override
+    public boolean isSupported() {
+        try {
+            Cipher.getInstance(TRANSFORMATION);
+            KeyGenerator.getInstance(ALGORITHM);
+        } catch (NoSuchAlgorithmException | NoSuchPaddingException e) {
+            return false;
+        }
+
+        return true;
+    }
+
+    private static final class DefaultRandomHolder {
+
+        static final SecureRandom RANDOM = new SecureRandom();
+
+    }
+
+}
\ No newline at end of file
@@ -0,0 +1,96 @@
+/*
+ * Copyright (c) 2022 Leon Linhart
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package io.github.themrmilchmann.stash.internal.platform.universal;
+
+import io.github.themrmilchmann.stash.EncryptionAlgorithm;
+
+import com.sun.management.HotSpotDiagnosticMXBean;
+
+import javax.annotation.Nullable;
+import java.lang.management.ManagementFactory;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Selects the fastest {@link EncryptionAlgorithm} for the current host.
+ *
+ * <p>The selection is made once and cached for the lifetime of the JVM.</p>
+ *
+ * @author  Leon Linhart
+ */
+public final class AlgorithmSelection {
+
+    /*
+     * The architectures for which the JDK provides AES-GCM intrinsics. All CPUs
+     * of these architectures that are in use today implement the respective AES
+     * instructions.
+     */
+    private static final Set<String> AES_ACCELERATED_ARCHITECTURES = Set.of("amd64", "x86_64", "aarch64");
+
+    /**
+     * {@return the fastest supported algorithm on the current host}
+     */
+    public static EncryptionAlgorithm fastest() {
+        return SelectionHolder.ALGORITHM;
+    }
+
+    static EncryptionAlgorithm select() {
+        AesGcmStorageFactory aesGcmStorageFactory = new AesGcmStorageFactory();
+        if (!aesGcmStorageFactory.isSupported()) return EncryptionAlgorithm.CHACHA20;
+
+        UniversalStorageFactory universalStorageFactory = new UniversalStorageFactory();
+        if (!universalStorageFactory.isSupported()) return EncryptionAlgorithm.AES_GCM;
+
+        Boolean isAESAccelerated = isAESAccelerated();
+        if (isAESAccelerated != null) return isAESAccelerated ? EncryptionAlgorithm.AES_GCM : EncryptionAlgorithm.CHACHA20;
+
+        String arch = System.getProperty("os.arch", "").toLowerCase(Locale.ROOT);
+        return AES_ACCELERATED_ARCHITECTURES.contains(arch) ? EncryptionAlgorithm.AES_GCM : EncryptionAlgorithm.CHACHA20;
+    }
+
+    /*
+     * HotSpot exposes whether it uses the AES instructions of the CPU for its
+     * intrinsics as VM option. Other JVMs (or runtime images without the
+     * jdk.management module) do not provide this information, in which case
+     * null is returned.
+     */
+    @Nullable
+    private static Boolean isAESAccelerated() {
+        try {
+            HotSpotDiagnosticMXBean bean = ManagementFactory.getPlatformMXBean(HotSpotDiagnosticMXBean.class);
+            if (bean == null) return null;
+
+            return Boolean.parseBoolean(bean.getVMOption("UseAES").getValue());
+        } catch (RuntimeException | LinkageError e) {
+            return null;
+        }
+    }
+
+    private static final class SelectionHolder {
+
+        static final EncryptionAlgorithm ALGORITHM = select();
+
+    }
+
+    private AlgorithmSelection() {}
+
+}
@@ -0,0 +1,183 @@
+/*
+ * Copyright (c) 2022 Leon Linhart
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package io.github.themrmilchmann.stash.internal.platform.universal;
+
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.ChaCha20ParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.security.InvalidAlgorithmParameterException;
+import java.security.InvalidKeyException;
+import java.util.Arrays;
+
+/**
+ * A pooled ChaCha20 {@link Cipher} together with reusable buffers for the key
+ * and the nonce of a single operation.
+ *
+ * <p>The key is held by a destroyable {@link SecretKey} that is refilled for
+ * every operation instead of wrapping the key in a new
+ * {@link SecretKeySpec}. Once an operation is done, {@link #clear()} zeroes the
+ * buffers and re-initializes the cipher with a dummy key. The JDK's ChaCha20
+ * implementation zeroes the copy of the previous key and overwrites the state
+ * derived from it when it is re-initialized. Thus, no key material is left
+ * behind in a pooled context.</p>
+ *
+ * <p>The cipher still receives a short-lived copy of the key from
+ * {@link SecretKey#getEncoded()} for every initialization. That copy is owned
+ * by the cipher and zeroed by the re-initialization in {@link #clear()}. The
+ * same applies to keys that are {@link #init(int, SecretKey) passed in}
+ * explicitly.</p>
+ *
+ * @author  Leon Linhart
+ */
+final class CipherContext {
+
+    static final int KEY_SIZE = 32;
+    static final int NONCE_SIZE = 12;
+
+    private static final SecretKey DUMMY_KEY = new SecretKeySpec(new byte[KEY_SIZE], UniversalStorageFactory.ALGORITHM);
+
+    private final Cipher cipher = UniversalStorageFactory.createCipher();
+    private final ReusableKey key = new ReusableKey();
+    private final byte[] nonce = new byte[NONCE_SIZE];
+
+    /*
+     * ChaCha20 refuses to re-initialize a cipher with the key and nonce of its
+     * previous initialization. Since the dummy key is always the same, a
+     * counter is used as nonce for the re-initialization instead.
+     */
+    private final byte[] dummyNonce = new byte[NONCE_SIZE];
+    private long resets;
+
+    /**
+     * {@return the cipher of this context}
+     */
+    Cipher cipher() {
+        return this.cipher;
+    }
+
+    /**
+     * Returns the buffer for the key of the current operation.
+     *
+     * <p>The returned buffer must be filled before the cipher is
+     * {@link #init(int) initialized}.</p>
+     *
+     * @return  the buffer for the key of the current operation
+     */
+    byte[] key() {
+        this.key.isDestroyed = false;
+        return this.key.material;
+    }
+
+    /**
+     * Returns the buffer for the nonce of the current operation.
+     *
+     * <p>The returned buffer must be filled before the cipher is
+     * {@link #init(int) initialized}.</p>
+     *
+     * @return  the buffer for the nonce of the current operation
+     */
+    byte[] nonce() {
+        return this.nonce;
+    }
+
+    /**
+     * Initializes the cipher with the current key and nonce.
+     *
+     * @param opmode    the operation mode of the cipher
+     *
+     * @throws InvalidKeyException                  if the key is invalid
+     * @throws InvalidAlgorithmParameterException   if the nonce is invalid
+     */
+    void init(int opmode) throws InvalidKeyException, InvalidAlgorithmParameterException {
+        this.init(opmode, this.key);
+    }
+
+    /**
+     * Initializes the cipher with the given key and the current nonce.
+     *
+     * @param opmode    the operation mode of the cipher
+     * @param key       the key to initialize the cipher with
+     *
+     * @throws InvalidKeyException                  if the key is invalid
+     * @throws InvalidAlgorithmParameterException   if the nonce is invalid
+     */
+    void init(int opmode, SecretKey key) throws InvalidKeyException, InvalidAlgorithmParameterException {
+        this.cipher.init(opmode, key, new ChaCha20ParameterSpec(this.nonce, 0));
+    }
+
+    /**
+     * Zeroes the key and the nonce of the current operation and re-initializes
+     * the cipher with a dummy key.
+     *
+     * <p>This must be called before the context is returned to its pool.</p>
+     */
+    void clear() {
+        this.key.destroy();
+        Arrays.fill(this.nonce, (byte) 0);
+
+        long resets = ++this.resets;
+        for (int i = 0; i < Long.BYTES; i++) this.dummyNonce[i] = (byte) (resets >>> (i * 8));
+
+        try {
+            this.cipher.init(Cipher.DECRYPT_MODE, DUMMY_KEY, new ChaCha20ParameterSpec(this.dummyNonce, 0));
+        } catch (InvalidKeyException | InvalidAlgorithmParameterException e) {
+            throw new RuntimeException("Failed to reset cipher", e);
+        }
+    }
+
+    @SuppressWarnings("serial")
+    private static final class ReusableKey implements SecretKey {
+
+        private final byte[] material = new byte[KEY_SIZE];
+        private boolean isDestroyed = true;
+
+        @Override
+        public String getAlgorithm() {
+            return UniversalStorageFactory.ALGORITHM;
+        }
+
+        @Override
+        public String getFormat() {
+            return "RAW";
+        }
+
+        @Override
+        public byte[] getEncoded() {
+            if (this.isDestroyed) throw new IllegalStateException("Key has been destroyed");
+            return this.material.clone();
+        }
+
+        @Override
+        public void destroy() {
+            Arrays.fill(this.material, (byte) 0);
+            this.isDestroyed = true;
+        }
+
+        @Override
+        public boolean isDestroyed() {
+            return this.isDestroyed;
+        }
+
+    }
+
+}
\ No newline at end of file
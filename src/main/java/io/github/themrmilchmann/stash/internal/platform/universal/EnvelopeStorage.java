@@ -0,0 +1,230 @@
+/*
+ * Copyright (c) 2022 Leon Linhart
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package io.github.themrmilchmann.stash.internal.platform.universal;
+
+import com.sun.jna.Pointer;
+import io.github.themrmilchmann.stash.BufferStorage;
+import io.github.themrmilchmann.stash.Storage;
+import io.github.themrmilchmann.stash.internal.SlabAllocator;
+
+import javax.annotation.Nullable;
+import javax.crypto.*;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.security.InvalidAlgorithmParameterException;
+import java.security.InvalidKeyException;
+import java.security.SecureRandom;
+
+/**
+ * A platform-independent {@link Storage} implementation that encrypts data
+ * with a {@link MasterKey} shared by all storages of an
+ * {@link EnvelopeStorageFactory} using the ChaCha20 algorithm.
+ *
+ * <p>Compared to {@link OffHeapStorage}, no key is generated for each write.
+ * Instead, writing to this storage only requires drawing a nonce and a single
+ * pass of the cipher. The nonce and the encrypted data are kept in a
+ * {@link SlabAllocator.Slot slot} of native memory that is shared with other
+ * storages of the same factory. The slot is reused for subsequent writes as
+ * long as it is large enough.</p>
+ *
+ * <p>Slot layout: {@code nonce (12 bytes) | length (4 bytes) | data}</p>
+ *
+ * @author  Leon Linhart
+ */
+public final class EnvelopeStorage implements BufferStorage {
+
+    private static final int NONCE_SIZE = CipherContext.NONCE_SIZE;
+
+    private static final int NONCE_OFFSET = 0;
+    private static final int LENGTH_OFFSET = NONCE_OFFSET + NONCE_SIZE;
+    private static final int DATA_OFFSET = LENGTH_OFFSET + Integer.BYTES;
+
+    private final EnvelopeStorageFactory factory;
+    private final SecureRandom random;
+
+    @Nullable private SlabAllocator.Slot slot;
+    @Nullable private MasterKey masterKey;
+
+    EnvelopeStorage(EnvelopeStorageFactory factory, SecureRandom random) {
+        this.factory = factory;
+        this.random = random;
+    }
+
+    @Override
+    public void dispose() {
+        if (this.slot != null) {
+            this.factory.getAllocator().free(this.slot);
+            this.slot = null;
+        }
+
+        this.releaseMasterKey();
+    }
+
+    @Override
+    public int size() {
+        assert (this.slot != null);
+        this.slot.beginAccess();
+
+        try {
+            return this.slot.base().getInt(this.slot.offset() + LENGTH_OFFSET);
+        } finally {
+            this.slot.endAccess();
+        }
+    }
+
+    @Override
+    public void read(ByteBuffer dst) {
+        this.read(dst, false);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>The data is only kept if it has been encrypted with the current master
+     * key. Otherwise, it is consumed so that it is re-encrypted with the
+     * current master key when it is written back.</p>
+     */
+    @Override
+    public boolean peek(ByteBuffer dst) {
+        assert (this.masterKey != null);
+
+        boolean retain = this.factory.isCurrent(this.masterKey);
+        this.read(dst, retain);
+
+        return retain;
+    }
+
+    private void read(ByteBuffer dst, boolean retain) {
+        assert (this.slot != null);
+        assert (this.masterKey != null);
+
+        Pointer base = this.slot.base();
+        long offset = this.slot.offset();
+
+        this.slot.beginAccess();
+
+        int length = base.getInt(offset + LENGTH_OFFSET);
+
+        if (dst.remaining() < length) {
+            this.slot.endAccess();
+            throw new BufferOverflowException();
+        }
+
+        CipherContext context = this.factory.acquireCipher();
+
+        try {
+            base.read(offset + NONCE_OFFSET, context.nonce(), 0, NONCE_SIZE);
+
+            try {
+                context.init(Cipher.DECRYPT_MODE, this.masterKey);
+            } catch (InvalidKeyException | InvalidAlgorithmParameterException e) {
+                throw new RuntimeException("Failed to initialize cipher for decryption", e);
+            }
+
+            try {
+                context.cipher().doFinal(base.getByteBuffer(offset + DATA_OFFSET, length), dst);
+            } catch (IllegalBlockSizeException | ShortBufferException | BadPaddingException e) {
+                throw new RuntimeException(e);
+            }
+        } finally {
+            if (retain) {
+                this.slot.endAccess();
+            } else {
+                // Keep the slot around to be reused by the next write.
+                this.slot.zero();
+                this.slot.endAccess();
+
+                this.releaseMasterKey();
+            }
+
+            this.factory.releaseCipher(context);
+        }
+    }
+
+    @Override
+    public void write(ByteBuffer src) {
+        int length = src.remaining();
+        int size = DATA_OFFSET + length;
+
+        // Retain the key first to fail before touching the allocator if the factory has been closed.
+        MasterKey masterKey = this.factory.retainForEncryption();
+
+        if (this.slot == null || this.slot.size() < size) {
+            SlabAllocator allocator = this.factory.getAllocator();
+
+            try {
+                if (this.slot != null) {
+                    allocator.free(this.slot);
+                    this.slot = null;
+                }
+
+                this.slot = allocator.allocate(size);
+            } catch (RuntimeException | Error e) {
+                masterKey.release();
+                throw e;
+            }
+        }
+
+        Pointer base = this.slot.base();
+        long offset = this.slot.offset();
+
+        CipherContext context = this.factory.acquireCipher();
+        this.slot.beginAccess();
+
+        try {
+            byte[] nonce = context.nonce();
+            this.random.nextBytes(nonce);
+
+            try {
+                context.init(Cipher.ENCRYPT_MODE, masterKey);
+            } catch (InvalidKeyException | InvalidAlgorithmParameterException e) {
+                throw new RuntimeException("Failed to initialize cipher for encryption", e);
+            }
+
+            try {
+                context.cipher().doFinal(src, base.getByteBuffer(offset + DATA_OFFSET, length));
+            } catch (ShortBufferException | IllegalBlockSizeException | BadPaddingException e) {
+                throw new RuntimeException("Failed to encrypt data", e);
+            }
+
+            base.write(offset + NONCE_OFFSET, nonce, 0, NONCE_SIZE);
+            base.setInt(offset + LENGTH_OFFSET, length);
+        } catch (RuntimeException e) {
+            masterKey.release();
+            throw e;
+        } finally {
+            this.slot.endAccess();
+            this.factory.releaseCipher(context);
+        }
+
+        this.releaseMasterKey();
+        this.masterKey = masterKey;
+    }
+
+    private void releaseMasterKey() {
+        if (this.masterKey != null) {
+            this.masterKey.release();
+            this.masterKey = null;
+        }
+    }
+
+}
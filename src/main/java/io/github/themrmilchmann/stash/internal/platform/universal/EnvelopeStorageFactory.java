@@ -0,0 +1,192 @@
+/*
+ * Copyright (c) 2022 Leon Linhart
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package io.github.themrmilchmann.stash.internal.platform.universal;
+
+import com.sun.jna.Native;
+import io.github.themrmilchmann.stash.StorageFactory;
+import io.github.themrmilchmann.stash.internal.InstancePool;
+import io.github.themrmilchmann.stash.internal.SlabAllocator;
+
+import javax.crypto.Cipher;
+import javax.crypto.NoSuchPaddingException;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * A factory for {@link EnvelopeStorage} instances.
+ *
+ * <p>Each factory owns a single {@link MasterKey} that is used to encrypt the
+ * data of all its storages. The master key may be {@link #rotate() rotated} at
+ * any time, and it is rotated automatically once it has been used for too many
+ * encryptions. Data that has been encrypted with a previous master key remains
+ * readable, and previous keys are destroyed once no storage references them
+ * anymore.</p>
+ *
+ * <p>Since the storages only need to keep a nonce and the encrypted data, their
+ * memory is packed into shared slabs by a {@link SlabAllocator}. The master
+ * keys are kept in the same native memory instead of the Java heap.</p>
+ *
+ * @author  Leon Linhart
+ */
+public final class EnvelopeStorageFactory implements StorageFactory<EnvelopeStorage>, AutoCloseable {
+
+    private static final int POOL_CAPACITY = Runtime.getRuntime().availableProcessors() * 2;
+
+    /*
+     * Contexts are cleared before they are returned to the pool. Thus, idle
+     * ciphers never keep a copy of a master key, neither of the current one nor
+     * of keys that have been rotated out.
+     */
+    private final InstancePool<CipherContext> ciphers = new InstancePool<>(CipherContext::new, POOL_CAPACITY);
+
+    private final SlabAllocator allocator = new SlabAllocator(SlabAllocator.MemorySource.MALLOC);
+
+    private final SecureRandom random;
+    private final AtomicReference<MasterKey> masterKey;
+
+    private volatile boolean isClosed;
+
+    /**
+     * Creates a new factory with a fresh master key.
+     *
+     * @param random    the source of randomness for master keys and nonces
+     */
+    public EnvelopeStorageFactory(SecureRandom random) {
+        this.random = random;
+        this.masterKey = new AtomicReference<>(new MasterKey(this.allocator, random));
+    }
+
+    @Override
+    public EnvelopeStorage create() {
+        return this.create(this.random);
+    }
+
+    @Override
+    public EnvelopeStorage create(SecureRandom random) {
+        return new EnvelopeStorage(this, random);
+    }
+
+    @Override
+    public boolean isSupported() {
+        try {
+            Cipher.getInstance(UniversalStorageFactory.ALGORITHM);
+        } catch (NoSuchAlgorithmException | NoSuchPaddingException e) {
+            return false;
+        }
+
+        try {
+            // Touching Native forces JNA to load its native library.
+            return Native.POINTER_SIZE > 0;
+        } catch (UnsatisfiedLinkError | NoClassDefFoundError e) {
+            return false;
+        }
+    }
+
+    /**
+     * Destroys the master key, zeroes the memory of the storages created by this
+     * factory, and returns it to the memory source.
+     *
+     * <p>All storages created by this factory must have been disposed. This
+     * method must only be called once.</p>
+     */
+    @Override
+    public void close() {
+        this.isClosed = true;
+
+        // The master key lives in memory of the allocator.
+        this.masterKey.get().release();
+        this.allocator.close();
+    }
+
+    /**
+     * Replaces the current master key with a fresh one. Subsequent writes use
+     * the new key.
+     *
+     * @throws IllegalStateException    if this factory has been closed
+     */
+    public void rotate() {
+        if (this.isClosed) throw new IllegalStateException("Factory has been closed");
+        this.rotate(this.masterKey.get());
+    }
+
+    private void rotate(MasterKey expected) {
+        MasterKey masterKey = new MasterKey(this.allocator, this.random);
+
+        if (this.masterKey.compareAndSet(expected, masterKey)) {
+            expected.release();
+        } else {
+            // Somebody else rotated the key concurrently.
+            masterKey.release();
+        }
+    }
+
+    /**
+     * {@return a retained reference to the current master key that may be used
+     * for a single encryption}
+     *
+     * @throws IllegalStateException    if this factory has been closed
+     */
+    MasterKey retainForEncryption() {
+        while (true) {
+            MasterKey masterKey = this.masterKey.get();
+
+            if (!masterKey.retain()) {
+                // The key has either been rotated concurrently, or destroyed for good by close.
+                if (this.isClosed) throw new IllegalStateException("Factory has been closed");
+                continue;
+            }
+
+            if (masterKey.countEncryption()) return masterKey;
+
+            masterKey.release();
+            this.rotate(masterKey);
+        }
+    }
+
+    /**
+     * {@return whether the given master key is the current one}
+     */
+    boolean isCurrent(MasterKey masterKey) {
+        return this.masterKey.get() == masterKey;
+    }
+
+    SlabAllocator getAllocator() {
+        return this.allocator;
+    }
+
+    CipherContext acquireCipher() {
+        return this.ciphers.acquire();
+    }
+
+    /**
+     * {@link CipherContext#clear() Clears} the given context and returns it to
+     * the pool.
+     *
+     * @param context   the context to release
+     */
+    void releaseCipher(CipherContext context) {
+        context.clear();
+        this.ciphers.release(context);
+    }
+
+}
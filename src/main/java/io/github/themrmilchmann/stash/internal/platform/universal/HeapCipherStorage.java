@@ -0,0 +1,233 @@
+/*
+ * Copyright (c) 2022 Leon Linhart
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package io.github.themrmilchmann.stash.internal.platform.universal;
+
+import io.github.themrmilchmann.stash.BufferStorage;
+import io.github.themrmilchmann.stash.internal.InstancePool;
+
+import javax.annotation.Nullable;
+import javax.crypto.*;
+import javax.security.auth.DestroyFailedException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.security.InvalidAlgorithmParameterException;
+import java.security.InvalidKeyException;
+import java.security.SecureRandom;
+import java.security.spec.AlgorithmParameterSpec;
+import java.util.Arrays;
+
+/**
+ * A base class for storages that encrypt data with a random key that is
+ * generated for every write, and keep the key, the IV, and the encrypted data
+ * on the Java heap.
+ *
+ * <p>Subclasses only provide the parameters of their transformation.
+ * {@link Cipher} and {@link KeyGenerator} instances are borrowed from pools
+ * owned by the respective factory for the duration of a single operation.</p>
+ *
+ * @author  Leon Linhart
+ */
+abstract class HeapCipherStorage implements BufferStorage {
+
+    private final InstancePool<Cipher> encryptionCiphers;
+    private final InstancePool<Cipher> decryptionCiphers;
+    private final InstancePool<KeyGenerator> keyGenerators;
+    private final SecureRandom random;
+
+    private final int ivSize;
+    private final int tagSize;
+
+    @Nullable private SecretKey key;
+    @Nullable private byte[] iv;
+    @Nullable private byte[] data;
+
+    /**
+     * Creates a new storage.
+     *
+     * @param ivSize    the size of the IV in bytes
+     * @param tagSize   the size of the authentication tag that is appended to
+     *                  the encrypted data in bytes, or {@code 0} if the data is
+     *                  not authenticated
+     */
+    HeapCipherStorage(InstancePool<Cipher> encryptionCiphers, InstancePool<Cipher> decryptionCiphers, InstancePool<KeyGenerator> keyGenerators, SecureRandom random, int ivSize, int tagSize) {
+        this.encryptionCiphers = encryptionCiphers;
+        this.decryptionCiphers = decryptionCiphers;
+        this.keyGenerators = keyGenerators;
+        this.random = random;
+        this.ivSize = ivSize;
+        this.tagSize = tagSize;
+    }
+
+    /**
+     * {@return the parameters for initializing a cipher with the given IV}
+     *
+     * @param iv    the IV
+     */
+    abstract AlgorithmParameterSpec createParameterSpec(byte[] iv);
+
+    /**
+     * Initializes the given key generator for generating a new key.
+     *
+     * @param keyGenerator  the key generator
+     * @param random        the source of randomness for the key
+     */
+    abstract void initKeyGenerator(KeyGenerator keyGenerator, SecureRandom random);
+
+    /**
+     * Prepares the given cipher to be used for decrypting the same data again
+     * after a {@link #peek(ByteBuffer) peek}.
+     *
+     * @param cipher    the cipher that has been used for decryption
+     * @param key       the key of the data
+     * @param iv        the IV of the data
+     *
+     * @implSpec    The default implementation does nothing.
+     */
+    void resetForReuse(Cipher cipher, SecretKey key, byte[] iv) {}
+
+    @Override
+    public final void dispose() {
+        this.key = null;
+
+        if (this.iv != null) {
+            Arrays.fill(this.iv, (byte) 0);
+            this.iv = null;
+        }
+
+        if (this.data != null) {
+            Arrays.fill(this.data, (byte) 0);
+            this.data = null;
+        }
+    }
+
+    @Override
+    public final int size() {
+        assert (this.data != null);
+        return this.data.length - this.tagSize;
+    }
+
+    @Override
+    public final void read(ByteBuffer dst) {
+        this.read(dst, false);
+    }
+
+    @Override
+    public final boolean peek(ByteBuffer dst) {
+        this.read(dst, true);
+        return true;
+    }
+
+    private void read(ByteBuffer dst, boolean retain) {
+        assert (this.key != null);
+        assert (this.iv != null);
+        assert (this.data != null);
+
+        if (dst.remaining() < this.data.length - this.tagSize) throw new BufferOverflowException();
+
+        Cipher cipher = this.decryptionCiphers.acquire();
+
+        try {
+            try {
+                cipher.init(Cipher.DECRYPT_MODE, this.key, this.createParameterSpec(this.iv));
+            } catch (InvalidKeyException | InvalidAlgorithmParameterException e) {
+                throw new RuntimeException("Failed to initialize cipher for decryption", e);
+            }
+
+            try {
+                cipher.doFinal(ByteBuffer.wrap(this.data), dst);
+            } catch (AEADBadTagException e) {
+                throw new RuntimeException("Encrypted data has been tampered with", e);
+            } catch (IllegalBlockSizeException | ShortBufferException | BadPaddingException e) {
+                throw new RuntimeException(e);
+            }
+
+            if (retain) this.resetForReuse(cipher, this.key, this.iv);
+        } finally {
+            this.decryptionCiphers.release(cipher);
+            if (!retain) this.consume();
+        }
+    }
+
+    private void consume() {
+        assert (this.key != null);
+        assert (this.iv != null);
+        assert (this.data != null);
+
+        Arrays.fill(this.data, (byte) 0);
+        Arrays.fill(this.iv, (byte) 0);
+        this.data = null;
+        this.iv = null;
+
+        try {
+            this.key.destroy();
+        } catch (DestroyFailedException e) {
+            /*
+             * It's unfortunate that we may not be able to destroy the key
+             * here, but it ultimately doesn't matter since we generate a
+             * new key anyway. (Additionally, the IV and the data is
+             * zeroed.)
+             */
+        } finally {
+            this.key = null;
+        }
+    }
+
+    @Override
+    public final void write(ByteBuffer src) {
+        // The previous data may have been kept by a peek.
+        if (this.data != null) this.consume();
+
+        KeyGenerator keyGenerator = this.keyGenerators.acquire();
+
+        try {
+            this.initKeyGenerator(keyGenerator, this.random);
+            this.key = keyGenerator.generateKey();
+        } finally {
+            this.keyGenerators.release(keyGenerator);
+        }
+
+        this.iv = new byte[this.ivSize];
+        this.random.nextBytes(this.iv);
+
+        AlgorithmParameterSpec spec = this.createParameterSpec(this.iv);
+        Cipher cipher = this.encryptionCiphers.acquire();
+
+        try {
+            try {
+                cipher.init(Cipher.ENCRYPT_MODE, this.key, spec);
+            } catch (InvalidKeyException | InvalidAlgorithmParameterException e) {
+                throw new RuntimeException("Failed to initialize cipher for encryption", e);
+            }
+
+            this.data = new byte[cipher.getOutputSize(src.remaining())];
+
+            try {
+                cipher.doFinal(src, ByteBuffer.wrap(this.data));
+            } catch (ShortBufferException | IllegalBlockSizeException | BadPaddingException e) {
+                throw new RuntimeException("Failed to encrypt data", e);
+            }
+        } finally {
+            this.encryptionCiphers.release(cipher);
+        }
+    }
+
+}
\ No newline at end of file
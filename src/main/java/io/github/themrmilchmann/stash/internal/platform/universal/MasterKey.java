@@ -0,0 +1,170 @@
+/*
+ * Copyright (c) 2022 Leon Linhart
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package io.github.themrmilchmann.stash.internal.platform.universal;
+
+import io.github.themrmilchmann.stash.internal.SlabAllocator;
+
+import javax.annotation.Nullable;
+import javax.crypto.SecretKey;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A reference-counted ChaCha20 master key used for envelope encryption.
+ *
+ * <p>A master key is referenced by the {@link EnvelopeStorageFactory} as long
+ * as it is the factory's current key, and by every {@link EnvelopeStorage}
+ * that holds data encrypted with it. The key material is zeroed once the last
+ * reference is released.</p>
+ *
+ * <p>The key material is kept in a {@link SlabAllocator.Slot slot} of native
+ * memory instead of the Java heap, so that the garbage collector never leaves
+ * copies of it behind. Ciphers receive a copy of the key from
+ * {@link #getEncoded()} that is zeroed when the cipher is
+ * {@link CipherContext#clear() cleared}.</p>
+ *
+ * @author  Leon Linhart
+ */
+@SuppressWarnings("serial")
+final class MasterKey implements SecretKey {
+
+    /*
+     * Nonces are chosen at random. To keep the probability of a nonce
+     * collision negligible, a key must not be used for more than 2^32
+     * encryptions. (See NIST SP 800-38D, Section 8.3.)
+     */
+    private static final long MAX_ENCRYPTIONS = 1L << 32;
+
+    private static final int KEY_SIZE = 32;
+
+    private final AtomicInteger references = new AtomicInteger(1);
+    private final AtomicLong encryptions = new AtomicLong();
+
+    private final SlabAllocator allocator;
+    @Nullable private volatile SlabAllocator.Slot slot;
+
+    MasterKey(SlabAllocator allocator, SecureRandom random) {
+        this.allocator = allocator;
+
+        SlabAllocator.Slot slot = allocator.allocate(KEY_SIZE);
+        byte[] key = new byte[KEY_SIZE];
+
+        slot.beginAccess();
+
+        try {
+            random.nextBytes(key);
+            slot.base().write(slot.offset(), key, 0, KEY_SIZE);
+        } finally {
+            slot.endAccess();
+            Arrays.fill(key, (byte) 0);
+        }
+
+        this.slot = slot;
+    }
+
+    @Override
+    public String getAlgorithm() {
+        return UniversalStorageFactory.ALGORITHM;
+    }
+
+    @Override
+    public String getFormat() {
+        return "RAW";
+    }
+
+    @Override
+    public byte[] getEncoded() {
+        SlabAllocator.Slot slot = this.slot;
+        if (slot == null || this.isDestroyed()) throw new IllegalStateException("Master key has been destroyed");
+
+        byte[] key = new byte[KEY_SIZE];
+        slot.beginAccess();
+
+        try {
+            slot.base().read(slot.offset(), key, 0, KEY_SIZE);
+        } finally {
+            slot.endAccess();
+        }
+
+        return key;
+    }
+
+    /**
+     * Zeroes the key material and returns its memory to the allocator.
+     *
+     * <p>This is called when the last reference is {@link #release() released}
+     * and must not be called while the key is still in use.</p>
+     */
+    @Override
+    public void destroy() {
+        SlabAllocator.Slot slot = this.slot;
+        if (slot == null) return;
+
+        this.slot = null;
+        this.allocator.free(slot);
+    }
+
+    @Override
+    public boolean isDestroyed() {
+        return this.references.get() == 0;
+    }
+
+    /**
+     * Attempts to register an encryption with this key.
+     *
+     * @return  whether the key may be used for another encryption
+     */
+    boolean countEncryption() {
+        return this.encryptions.incrementAndGet() <= MAX_ENCRYPTIONS;
+    }
+
+    /**
+     * Attempts to add a reference to this key.
+     *
+     * @return  whether a reference was added, or {@code false} if the key has
+     *          already been destroyed
+     */
+    boolean retain() {
+        int references;
+
+        do {
+            references = this.references.get();
+            if (references == 0) return false;
+        } while (!this.references.compareAndSet(references, references + 1));
+
+        return true;
+    }
+
+    /**
+     * Releases a reference to this key and destroys the key if it was the last
+     * one.
+     */
+    void release() {
+        int references = this.references.decrementAndGet();
+        assert (references >= 0);
+
+        if (references == 0) this.destroy();
+    }
+
+}
@@ -0,0 +1,201 @@
+/*
+ * Copyright (c) 2022 Leon Linhart
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package io.github.themrmilchmann.stash.internal.platform.universal;
+
+import com.sun.jna.Pointer;
+import io.github.themrmilchmann.stash.BufferStorage;
+import io.github.themrmilchmann.stash.Storage;
+import io.github.themrmilchmann.stash.internal.InstancePool;
+import io.github.themrmilchmann.stash.internal.SlabAllocator;
+
+import javax.annotation.Nullable;
+import javax.crypto.*;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.security.InvalidAlgorithmParameterException;
+import java.security.InvalidKeyException;
+import java.security.SecureRandom;
+
+/**
+ * A platform-independent {@link Storage} implementation that encrypts data
+ * using the ChaCha20 algorithm similar to {@link UniversalStorage}. However,
+ * the key, the nonce and the encrypted data are kept in native memory instead
+ * of the Java heap.
+ *
+ * <p>Native memory is never moved by the garbage collector. Thus, no unzeroed
+ * copies of the data are left behind and disposing the storage deterministically
+ * zeroes all of its data. The data is kept in a {@link SlabAllocator.Slot slot}
+ * that is reused for subsequent writes as long as it is large enough.</p>
+ *
+ * <p>During an operation, the key and the nonce are copied into the buffers of
+ * a pooled {@link CipherContext} which are zeroed again once the operation is
+ * done. The JCA still hands a short-lived copy of the key to the cipher. That
+ * copy is zeroed when the context is {@link CipherContext#clear() cleared}, but
+ * initializing a cipher is not entirely free of heap allocations.</p>
+ *
+ * <p>The size of the data is kept on the heap so that it can be queried without
+ * {@link SlabAllocator.Slot#beginAccess() accessing} the slot.</p>
+ *
+ * <p>Slot layout: {@code key (32 bytes) | nonce (12 bytes) | data}</p>
+ *
+ * @author  Leon Linhart
+ */
+public final class OffHeapStorage implements BufferStorage {
+
+    private static final int KEY_SIZE = CipherContext.KEY_SIZE;
+    private static final int NONCE_SIZE = CipherContext.NONCE_SIZE;
+
+    private static final int KEY_OFFSET = 0;
+    private static final int NONCE_OFFSET = KEY_OFFSET + KEY_SIZE;
+    private static final int DATA_OFFSET = NONCE_OFFSET + NONCE_SIZE;
+
+    private final SlabAllocator allocator;
+    private final InstancePool<CipherContext> ciphers;
+    private final SecureRandom random;
+
+    @Nullable private SlabAllocator.Slot slot;
+    private int size;
+
+    OffHeapStorage(SlabAllocator allocator, InstancePool<CipherContext> ciphers, SecureRandom random) {
+        this.allocator = allocator;
+        this.ciphers = ciphers;
+        this.random = random;
+    }
+
+    @Override
+    public void dispose() {
+        if (this.slot != null) {
+            this.allocator.free(this.slot);
+            this.slot = null;
+        }
+
+        this.size = 0;
+    }
+
+    @Override
+    public int size() {
+        assert (this.slot != null);
+        return this.size;
+    }
+
+    @Override
+    public void read(ByteBuffer dst) {
+        this.read(dst, false);
+    }
+
+    @Override
+    public boolean peek(ByteBuffer dst) {
+        this.read(dst, true);
+        return true;
+    }
+
+    private void read(ByteBuffer dst, boolean retain) {
+        assert (this.slot != null);
+
+        Pointer base = this.slot.base();
+        long offset = this.slot.offset();
+
+        int length = this.size;
+        if (dst.remaining() < length) throw new BufferOverflowException();
+
+        CipherContext context = this.ciphers.acquire();
+        this.slot.beginAccess();
+
+        try {
+            base.read(offset + KEY_OFFSET, context.key(), 0, KEY_SIZE);
+            base.read(offset + NONCE_OFFSET, context.nonce(), 0, NONCE_SIZE);
+
+            try {
+                context.init(Cipher.DECRYPT_MODE);
+            } catch (InvalidKeyException | InvalidAlgorithmParameterException e) {
+                throw new RuntimeException("Failed to initialize cipher for decryption", e);
+            }
+
+            try {
+                context.cipher().doFinal(base.getByteBuffer(offset + DATA_OFFSET, length), dst);
+            } catch (IllegalBlockSizeException | ShortBufferException | BadPaddingException e) {
+                throw new RuntimeException(e);
+            }
+        } finally {
+            if (retain) {
+                this.slot.endAccess();
+            } else {
+                // Keep the slot around to be reused by the next write.
+                this.slot.zero();
+                this.slot.endAccess();
+
+                this.size = 0;
+            }
+
+            context.clear();
+            this.ciphers.release(context);
+        }
+    }
+
+    @Override
+    public void write(ByteBuffer src) {
+        int length = src.remaining();
+        int size = DATA_OFFSET + length;
+
+        if (this.slot == null || this.slot.size() < size) {
+            this.dispose();
+            this.slot = this.allocator.allocate(size);
+        }
+
+        Pointer base = this.slot.base();
+        long offset = this.slot.offset();
+
+        CipherContext context = this.ciphers.acquire();
+        this.slot.beginAccess();
+
+        try {
+            byte[] key = context.key();
+            byte[] nonce = context.nonce();
+
+            this.random.nextBytes(key);
+            this.random.nextBytes(nonce);
+
+            try {
+                context.init(Cipher.ENCRYPT_MODE);
+            } catch (InvalidKeyException | InvalidAlgorithmParameterException e) {
+                throw new RuntimeException("Failed to initialize cipher for encryption", e);
+            }
+
+            try {
+                context.cipher().doFinal(src, base.getByteBuffer(offset + DATA_OFFSET, length));
+            } catch (ShortBufferException | IllegalBlockSizeException | BadPaddingException e) {
+                throw new RuntimeException("Failed to encrypt data", e);
+            }
+
+            base.write(offset + KEY_OFFSET, key, 0, KEY_SIZE);
+            base.write(offset + NONCE_OFFSET, nonce, 0, NONCE_SIZE);
+
+            this.size = length;
+        } finally {
+            this.slot.endAccess();
+
+            context.clear();
+            this.ciphers.release(context);
+        }
+    }
+
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright (c) 2022 Leon Linhart
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package io.github.themrmilchmann.stash.internal.platform.universal;
+
+import com.sun.jna.Native;
+import io.github.themrmilchmann.stash.StorageFactory;
+import io.github.themrmilchmann.stash.internal.InstancePool;
+import io.github.themrmilchmann.stash.internal.SlabAllocator;
+
+import javax.crypto.Cipher;
+import javax.crypto.NoSuchPaddingException;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+
+/**
+ * A factory for {@link OffHeapStorage} instances.
+ *
+ * <p>The storages created by a factory share a {@link SlabAllocator} that
+ * draws its memory from the factory's {@link SlabAllocator.MemorySource}.
+ * Memory is returned to the source as soon as the storages that use it have
+ * been disposed, even if the factory is never closed.</p>
+ *
+ * @author  Leon Linhart
+ */
+public final class OffHeapStorageFactory implements StorageFactory<OffHeapStorage>, AutoCloseable {
+
+    private static final int POOL_CAPACITY = Runtime.getRuntime().availableProcessors() * 2;
+
+    private final SlabAllocator allocator;
+
+    /*
+     * Contexts are cleared before they are returned to the pool. Since this
+     * re-initializes the cipher with a dummy key, a single pool can be used for
+     * both encryption and decryption.
+     */
+    private final InstancePool<CipherContext> ciphers = new InstancePool<>(CipherContext::new, POOL_CAPACITY);
+
+    /**
+     * Creates a new factory that allocates memory using {@code malloc}.
+     */
+    public OffHeapStorageFactory() {
+        this(SlabAllocator.MemorySource.MALLOC);
+    }
+
+    /**
+     * Creates a new factory that draws memory from the given source.
+     *
+     * @param source    the source of native memory
+     */
+    public OffHeapStorageFactory(SlabAllocator.MemorySource source) {
+        this.allocator = new SlabAllocator(source);
+    }
+
+    @Override
+    public OffHeapStorage create() {
+        return this.create(DefaultRandomHolder.RANDOM);
+    }
+
+    @Override
+    public OffHeapStorage create(SecureRandom random) {
+        return new OffHeapStorage(this.allocator, this.ciphers, random);
+    }
+
+    @Override
+    public boolean isSupported() {
+        try {
+            Cipher.getInstance(UniversalStorageFactory.ALGORITHM);
+        } catch (NoSuchAlgorithmException | NoSuchPaddingException e) {
+            return false;
+        }
+
+        try {
+            // Touching Native forces JNA to load its native library.
+            return Native.POINTER_SIZE > 0;
+        } catch (UnsatisfiedLinkError | NoClassDefFoundError e) {
+            return false;
+        }
+    }
+
+    /**
+     * Zeroes the memory of the storages created by this factory and returns it
+     * to the memory source.
+     *
+     * <p>All storages created by this factory must have been disposed.</p>
+     */
+    @Override
+    public void close() {
+        this.allocator.close();
+    }
+
+    private static final class DefaultRandomHolder {
+
+        static final SecureRandom RANDOM = new SecureRandom();
+
+    }
+
+}
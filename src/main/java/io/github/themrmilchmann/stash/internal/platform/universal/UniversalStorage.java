@@ -22,146 +22,45 @@
 package io.github.themrmilchmann.stash.internal.platform.universal;
 
 import io.github.themrmilchmann.stash.Storage;
+import io.github.themrmilchmann.stash.internal.InstancePool;
 
-import javax.annotation.Nullable;
-import javax.crypto.*;
+import javax.crypto.Cipher;
+import javax.crypto.KeyGenerator;
+import javax.crypto.SecretKey;
 import javax.crypto.spec.ChaCha20ParameterSpec;
-import javax.security.auth.DestroyFailedException;
-import java.security.InvalidAlgorithmParameterException;
-import java.security.InvalidKeyException;
-import java.security.NoSuchAlgorithmException;
 import java.security.SecureRandom;
-import java.util.Arrays;
-
-import static io.github.themrmilchmann.stash.internal.platform.universal.UniversalStorageFactory.ALGORITHM;
+import java.security.spec.AlgorithmParameterSpec;
 
 /**
  * A platform-independent {@link Storage} implementation that obscures the data
  * by encrypting it with a random key using the ChaCha20 algorithm. However, the
  * key is stored in memory.
  *
+ * <p>{@link Cipher} and {@link KeyGenerator} instances are borrowed from pools
+ * owned by the {@link UniversalStorageFactory} for the duration of a single
+ * operation.</p>
+ *
  * @author  Leon Linhart
  */
-public final class UniversalStorage implements Storage {
-
-    private static Cipher getCipher() {
-        try {
-            return Cipher.getInstance(ALGORITHM);
-        } catch (NoSuchAlgorithmException | NoSuchPaddingException e) {
-            throw new RuntimeException(e);
-        }
-    }
+public final class UniversalStorage extends HeapCipherStorage {
 
-    private static KeyGenerator getKeyGenerator() {
-        try {
-            return KeyGenerator.getInstance(ALGORITHM);
-        } catch (NoSuchAlgorithmException e) {
-            throw new RuntimeException(e);
-        }
+    UniversalStorage(InstancePool<Cipher> encryptionCiphers, InstancePool<Cipher> decryptionCiphers, InstancePool<KeyGenerator> keyGenerators, SecureRandom random) {
+        super(encryptionCiphers, decryptionCiphers, keyGenerators, random, 12, 0);
     }
 
-    @Nullable private SecretKey key;
-    @Nullable private byte[] iv;
-    @Nullable private byte[] data;
-
-    UniversalStorage() {}
-
     @Override
-    public void dispose() {
-        this.key = null;
-
-        if (this.iv != null) {
-            Arrays.fill(this.iv, (byte) 0);
-            this.iv = null;
-        }
-
-        if (this.data != null) {
-            Arrays.fill(this.data, (byte) 0);
-            this.data = null;
-        }
+    AlgorithmParameterSpec createParameterSpec(byte[] iv) {
+        return new ChaCha20ParameterSpec(iv, 0);
     }
 
     @Override
-    public byte[] read() {
-        assert (this.key != null);
-        assert (this.iv != null);
-        assert (this.data != null);
-
-        Cipher cipher = getCipher();
-        ChaCha20ParameterSpec spec = new ChaCha20ParameterSpec(this.iv, 0);
-
-        try {
-            cipher.init(Cipher.DECRYPT_MODE, this.key, spec);
-        } catch (InvalidKeyException | InvalidAlgorithmParameterException e) {
-            throw new RuntimeException("Failed to initialize cipher for decryption", e);
-        }
-
-        byte[] bytes = new byte[cipher.getOutputSize(this.data.length)];
-        int read;
-
-        try {
-            read = cipher.doFinal(this.data, 0, this.data.length, bytes);
-        } catch (IllegalBlockSizeException | ShortBufferException | BadPaddingException e) {
-            throw new RuntimeException(e);
-        }
-
-        try {
-            byte[] res = new byte[read];
-            System.arraycopy(bytes, 0, res, 0, read);
-
-            return res;
-        } finally {
-            Arrays.fill(bytes, (byte) 0);
-            Arrays.fill(this.data, (byte) 0);
-            Arrays.fill(this.iv, (byte) 0);
-            this.data = null;
-            this.iv = null;
-
-            try {
-                this.key.destroy();
-            } catch (DestroyFailedException e) {
-                /*
-                 * It's unfortunate that we may not be able to destroy the key
-                 * here, but it ultimately doesn't matter since we generate a
-                 * new key anyway. (Additionally, the IV and the data is
-                 * zeroed.)
-                 */
-            } finally {
-                this.key = null;
-            }
-        }
+    void initKeyGenerator(KeyGenerator keyGenerator, SecureRandom random) {
+        keyGenerator.init(random);
     }
 
     @Override
-    public void write(byte[] bytes) {
-        KeyGenerator keyGenerator = getKeyGenerator();
-        this.key = keyGenerator.generateKey();
-
-        Cipher cipher = getCipher();
-
-        this.iv = new byte[12];
-
-        try {
-            SecureRandom.getInstanceStrong().nextBytes(this.iv);
-        } catch (NoSuchAlgorithmException e) {
-            throw new RuntimeException("Could not generate a strong nonce", e);
-        }
-
-        ChaCha20ParameterSpec spec = new ChaCha20ParameterSpec(this.iv, 0);
-
-        try {
-            cipher.init(Cipher.ENCRYPT_MODE, key, spec);
-        } catch (InvalidKeyException | InvalidAlgorithmParameterException e) {
-            throw new RuntimeException("Failed to initialize cipher for encryption", e);
-        }
-
-        this.data = new byte[cipher.getOutputSize(bytes.length)];
-
-        try {
-            cipher.doFinal(bytes, 0, bytes.length, this.data);
-        } catch (ShortBufferException | IllegalBlockSizeException | BadPaddingException e) {
-            throw new RuntimeException("Failed to encrypt data", e);
-        }
+    void resetForReuse(Cipher cipher, SecretKey key, byte[] iv) {
+        UniversalStorageFactory.resetForReuse(cipher, key, iv);
     }
 
 }
\ No newline at end of file
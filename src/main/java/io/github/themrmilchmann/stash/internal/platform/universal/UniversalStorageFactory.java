@@ -22,9 +22,16 @@
 package io.github.themrmilchmann.stash.internal.platform.universal;
 
 import io.github.themrmilchmann.stash.StorageFactory;
+import io.github.themrmilchmann.stash.internal.InstancePool;
 
 import javax.crypto.*;
+import javax.crypto.spec.ChaCha20ParameterSpec;
+import java.security.InvalidAlgorithmParameterException;
+import java.security.InvalidKeyException;
+import java.security.Key;
 import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.Arrays;
 
 /**
  * A factory for {@link UniversalStorage} instances.
@@ -35,9 +42,68 @@ public final class UniversalStorageFactory implements StorageFactory<UniversalSt
 
     static final String ALGORITHM = "ChaCha20";
 
+    private static final int POOL_CAPACITY = Runtime.getRuntime().availableProcessors() * 2;
+
+    static Cipher createCipher() {
+        try {
+            return Cipher.getInstance(ALGORITHM);
+        } catch (NoSuchAlgorithmException | NoSuchPaddingException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /*
+     * ChaCha20 refuses to re-initialize a cipher with the key and nonce of its
+     * previous initialization, even for decryption. When data is decrypted but
+     * kept in storage, the same key and nonce are used again for the next read.
+     * Re-initializing the cipher with a perturbed nonce makes sure that the
+     * next read succeeds regardless of which pooled cipher it is served by.
+     */
+    static void resetForReuse(Cipher cipher, Key key, byte[] nonce) {
+        byte[] perturbed = nonce.clone();
+        perturbed[0] ^= 1;
+
+        try {
+            cipher.init(Cipher.DECRYPT_MODE, key, new ChaCha20ParameterSpec(perturbed, 0));
+        } catch (InvalidKeyException | InvalidAlgorithmParameterException e) {
+            throw new RuntimeException("Failed to reset cipher", e);
+        } finally {
+            Arrays.fill(perturbed, (byte) 0);
+        }
+    }
+
+    private static KeyGenerator createKeyGenerator() {
+        try {
+            return KeyGenerator.getInstance(ALGORITHM);
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /*
+     * Looking up a Cipher or KeyGenerator goes through the JCA provider
+     * machinery which is surprisingly expensive compared to the actual
+     * encryption of a small secret. Thus, instances are pooled and shared
+     * between all storages created by this factory. Both are re-initialized
+     * for every operation, so no state is carried over between storages.
+     *
+     * Ciphers used for encryption and decryption are pooled separately since
+     * ChaCha20 refuses to re-initialize a cipher with the key and nonce of its
+     * previous initialization (which is exactly what a read after a write
+     * does).
+     */
+    private final InstancePool<Cipher> encryptionCiphers = new InstancePool<>(UniversalStorageFactory::createCipher, POOL_CAPACITY);
+    private final InstancePool<Cipher> decryptionCiphers = new InstancePool<>(UniversalStorageFactory::createCipher, POOL_CAPACITY);
+    private final InstancePool<KeyGenerator> keyGenerators = new InstancePool<>(UniversalStorageFactory::createKeyGenerator, POOL_CAPACITY);
+
     @Override
     public UniversalStorage create() {
-        return new UniversalStorage();
+        return this.create(DefaultRandomHolder.RANDOM);
+    }
+
+    @Override
+    public UniversalStorage create(SecureRandom random) {
+        return new UniversalStorage(this.encryptionCiphers, this.decryptionCiphers, this.keyGenerators, random);
     }
 
     @Override
@@ -52,4 +118,10 @@ public final class UniversalStorageFactory implements StorageFactory<UniversalSt
         return true;
     }
 
+    private static final class DefaultRandomHolder {
+
+        static final SecureRandom RANDOM = new SecureRandom();
+
+    }
+
 }
\ No newline at end of file
@@ -25,18 +25,24 @@ import com.sun.jna.Memory;
 import com.sun.jna.Native;
 import com.sun.jna.platform.win32.Kernel32Util;
 import com.sun.jna.platform.win32.WinDef;
+import io.github.themrmilchmann.stash.BufferStorage;
 import io.github.themrmilchmann.stash.Storage;
 import io.github.themrmilchmann.stash.internal.jna.win32.Crypt32Ext;
 
 import javax.annotation.Nullable;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
 
 /**
  * A (relatively) secure {@link Storage} implementation based on Windows' DPAPI.
  * The cold storage is unswappable memory protected by the OS itself.
  *
+ * <p>The native memory is reused for subsequent writes as long as it is large
+ * enough.</p>
+ *
  * @author  Leon Linhart
  */
-public final class DPAPIStorage implements Storage {
+public final class DPAPIStorage implements BufferStorage {
 
     private static int fit(int length, int blockSize) {
         return ((length + blockSize + 1) / blockSize) * blockSize;
@@ -45,6 +51,8 @@ public final class DPAPIStorage implements Storage {
     @Nullable private Memory memory;
     @Nullable private WinDef.LPVOID hMemory;
 
+    private int size;
+
     DPAPIStorage() {}
 
     @Override
@@ -54,14 +62,38 @@ public final class DPAPIStorage implements Storage {
             this.memory.close();
         }
 
+        this.memory = null;
         this.hMemory = null;
     }
 
     @Override
-    public byte[] read() {
+    public int size() {
+        assert (this.memory != null);
+        return this.size;
+    }
+
+    @Override
+    public void read(ByteBuffer dst) {
+        this.read(dst, false);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>The memory is protected again right after the data has been read.</p>
+     */
+    @Override
+    public boolean peek(ByteBuffer dst) {
+        this.read(dst, true);
+        return true;
+    }
+
+    private void read(ByteBuffer dst, boolean retain) {
         assert (this.memory != null);
         assert (this.hMemory != null);
 
+        if (dst.remaining() < this.size) throw new BufferOverflowException();
+
         if (!Crypt32Ext.INSTANCE.CryptUnprotectMemory(this.hMemory, (int) this.memory.size(), Crypt32Ext.CRYPTPROTECTMEMORY_SAME_PROCESS)) {
             int code = Native.getLastError();
             String message = Kernel32Util.getLastErrorMessage();
@@ -69,32 +101,52 @@ public final class DPAPIStorage implements Storage {
             throw new RuntimeException("CryptUnprotectMemory produced unexpected error[" + code + "]: " + message);
         }
 
-        int size = this.memory.getInt(0);
-        byte[] bytes = new byte[size];
-        this.memory.read(Integer.BYTES, bytes, 0, bytes.length);
-        this.memory.clear();
-        this.memory.close();
-
-        this.memory = null;
-        this.hMemory = null;
+        try {
+            int size = this.memory.getInt(0);
+            dst.put(this.memory.getByteBuffer(Integer.BYTES, size));
+        } catch (RuntimeException | Error e) {
+            this.memory.clear();
+            throw e;
+        }
 
-        return bytes;
+        if (retain) {
+            this.protect();
+        } else {
+            // Keep the memory around to be reused by the next write.
+            this.memory.clear();
+        }
     }
 
     @Override
-    public void write(byte[] bytes) {
-        int size = fit(Integer.BYTES + bytes.length, Crypt32Ext.CRYPTPROTECTMEMORY_BLOCK_SIZE);
+    public void write(ByteBuffer src) {
+        int length = src.remaining();
+        int size = fit(Integer.BYTES + length, Crypt32Ext.CRYPTPROTECTMEMORY_BLOCK_SIZE);
+
+        if (this.memory == null || this.memory.size() < size) {
+            this.dispose();
 
-        this.memory = new Memory(size);
-        this.hMemory = new WinDef.LPVOID(this.memory);
+            this.memory = new Memory(size);
+            this.hMemory = new WinDef.LPVOID(this.memory);
+        }
 
-        this.memory.setInt(0, bytes.length);
-        this.memory.write(Integer.BYTES, bytes, 0, bytes.length);
+        assert (this.hMemory != null);
 
-        if (!Crypt32Ext.INSTANCE.CryptProtectMemory(hMemory, size, Crypt32Ext.CRYPTPROTECTMEMORY_SAME_PROCESS)) {
+        this.memory.setInt(0, length);
+        this.memory.getByteBuffer(Integer.BYTES, length).put(src);
+        this.size = length;
+
+        this.protect();
+    }
+
+    private void protect() {
+        assert (this.memory != null);
+        assert (this.hMemory != null);
+
+        if (!Crypt32Ext.INSTANCE.CryptProtectMemory(this.hMemory, (int) this.memory.size(), Crypt32Ext.CRYPTPROTECTMEMORY_SAME_PROCESS)) {
             int code = Native.getLastError();
             String message = Kernel32Util.getLastErrorMessage();
 
+            this.memory.clear();
             throw new RuntimeException("CryptProtectMemory produced unexpected error[" + code + "]: " + message);
         }
     }
@@ -20,6 +20,10 @@
  * SOFTWARE.
  */
 import io.github.themrmilchmann.stash.StorageFactory;
+import io.github.themrmilchmann.stash.internal.platform.linux.GuardedMemoryStorageFactory;
+import io.github.themrmilchmann.stash.internal.platform.linux.LockedMemoryStorageFactory;
+import io.github.themrmilchmann.stash.internal.platform.linux.SecretMemoryStorageFactory;
+import io.github.themrmilchmann.stash.internal.platform.universal.OffHeapStorageFactory;
 import io.github.themrmilchmann.stash.internal.platform.win32.DPAPIStorageFactory;
 
 /**
@@ -34,12 +38,14 @@ module io.github.themrmilchmann.stash {
     requires com.sun.jna;
     requires com.sun.jna.platform;
 
+    requires static jdk.management;
+
     requires static jsr305;
 
     exports io.github.themrmilchmann.stash;
 
     uses StorageFactory;
 
-    provides StorageFactory with DPAPIStorageFactory;
+    provides StorageFactory with DPAPIStorageFactory, SecretMemoryStorageFactory, LockedMemoryStorageFactory, GuardedMemoryStorageFactory, OffHeapStorageFactory;
 
 }
\ No newline at end of file
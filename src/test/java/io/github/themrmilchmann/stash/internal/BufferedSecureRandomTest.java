@@ -0,0 +1,59 @@
+/*
+ * Copyright (c) 2022 Leon Linhart
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package io.github.themrmilchmann.stash.internal;
+
+import org.junit.jupiter.api.Test;
+
+import java.security.SecureRandom;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public final class BufferedSecureRandomTest {
+
+    @Test
+    public void testNextBytesExceedingCapacity() throws Exception {
+        BufferedSecureRandom random = new BufferedSecureRandom(SecureRandom.getInstance("DRBG"), 16);
+
+        byte[] bytes = new byte[64];
+        random.nextBytes(bytes);
+
+        assertFalse(Arrays.equals(new byte[bytes.length], bytes));
+    }
+
+    @Test
+    public void testNextBytesUnique() throws Exception {
+        BufferedSecureRandom random = new BufferedSecureRandom(SecureRandom.getInstance("DRBG"), 64);
+
+        byte[] previous = new byte[12];
+        random.nextBytes(previous);
+
+        for (int i = 0; i < 1000; i++) {
+            byte[] bytes = new byte[12];
+            random.nextBytes(bytes);
+
+            assertFalse(Arrays.equals(previous, bytes));
+            previous = bytes;
+        }
+    }
+
+}
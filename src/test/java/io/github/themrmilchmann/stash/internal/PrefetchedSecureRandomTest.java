@@ -0,0 +1,60 @@
+/*
+ * Copyright (c) 2022 Leon Linhart
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package io.github.themrmilchmann.stash.internal;
+
+import org.junit.jupiter.api.Test;
+
+import java.security.SecureRandom;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public final class PrefetchedSecureRandomTest {
+
+    @Test
+    public void testNextBytesExceedingBlock() throws Exception {
+        PrefetchedSecureRandom random = new PrefetchedSecureRandom(SecureRandom.getInstance("DRBG"), 16);
+
+        byte[] bytes = new byte[64];
+        random.nextBytes(bytes);
+
+        assertFalse(Arrays.equals(new byte[bytes.length], bytes));
+    }
+
+    @Test
+    public void testNextBytesUnique() throws Exception {
+        PrefetchedSecureRandom random = new PrefetchedSecureRandom(SecureRandom.getInstance("DRBG"), 12 * 100);
+
+        byte[] previous = new byte[12];
+        random.nextBytes(previous);
+
+        // Draws from the block first, and then from the source once the block has been used up.
+        for (int i = 0; i < 1000; i++) {
+            byte[] bytes = new byte[12];
+            random.nextBytes(bytes);
+
+            assertFalse(Arrays.equals(previous, bytes));
+            previous = bytes;
+        }
+    }
+
+}
\ No newline at end of file
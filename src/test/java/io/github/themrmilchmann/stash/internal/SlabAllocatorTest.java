@@ -0,0 +1,114 @@
+/*
+ * Copyright (c) 2022 Leon Linhart
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package io.github.themrmilchmann.stash.internal;
+
+import com.sun.jna.Pointer;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public final class SlabAllocatorTest {
+
+    @Test
+    public void testAllocateFree() {
+        try (SlabAllocator allocator = new SlabAllocator(SlabAllocator.MemorySource.MALLOC)) {
+            // Keeps the slab alive while the other slot is freed.
+            SlabAllocator.Slot retained = allocator.allocate(100);
+
+            SlabAllocator.Slot slot = allocator.allocate(100);
+            assertEquals(128, slot.size());
+
+            slot.base().setMemory(slot.offset(), slot.size(), (byte) 0x55);
+            allocator.free(slot);
+
+            for (byte b : slot.base().getByteArray(slot.offset(), slot.size())) assertEquals((byte) 0, b);
+            assertSame(slot, allocator.allocate(65));
+
+            allocator.free(retained);
+        }
+    }
+
+    @Test
+    public void testReleaseEmptySlab() {
+        AtomicInteger slabs = new AtomicInteger();
+
+        SlabAllocator.MemorySource source = new SlabAllocator.MemorySource() {
+
+            @Override
+            public Pointer allocate(long size) {
+                slabs.incrementAndGet();
+                return MALLOC.allocate(size);
+            }
+
+            @Override
+            public void free(Pointer pointer, long size) {
+                slabs.decrementAndGet();
+                MALLOC.free(pointer, size);
+            }
+
+        };
+
+        try (SlabAllocator allocator = new SlabAllocator(source)) {
+            SlabAllocator.Slot first = allocator.allocate(32);
+            SlabAllocator.Slot second = allocator.allocate(32);
+            assertEquals(1, slabs.get());
+
+            allocator.free(first);
+            assertEquals(1, slabs.get());
+
+            // The slab is returned to the source once its last slot has been freed.
+            allocator.free(second);
+            assertEquals(0, slabs.get());
+
+            SlabAllocator.Slot slot = allocator.allocate(32);
+            assertEquals(1, slabs.get());
+
+            allocator.free(slot);
+            assertEquals(0, slabs.get());
+        }
+    }
+
+    @Test
+    public void testAllocateDistinct() {
+        try (SlabAllocator allocator = new SlabAllocator(SlabAllocator.MemorySource.MALLOC)) {
+            SlabAllocator.Slot first = allocator.allocate(32);
+            SlabAllocator.Slot second = allocator.allocate(32);
+
+            assertEquals(first.base(), second.base());
+            assertNotEquals(first.offset(), second.offset());
+        }
+    }
+
+    @Test
+    public void testAllocateLarge() {
+        try (SlabAllocator allocator = new SlabAllocator(SlabAllocator.MemorySource.MALLOC)) {
+            SlabAllocator.Slot slot = allocator.allocate(1 << 20);
+            assertEquals(1 << 20, slot.size());
+            assertEquals(0, slot.offset());
+
+            allocator.free(slot);
+        }
+    }
+
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright (c) 2022 Leon Linhart
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package io.github.themrmilchmann.stash.internal.platform;
+
+import io.github.themrmilchmann.stash.BufferStorage;
+import io.github.themrmilchmann.stash.Storage;
+import org.junit.jupiter.api.Test;
+
+import javax.annotation.Nullable;
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public final class BufferStorageTest {
+
+    private static final class ArrayStorage implements Storage {
+
+        @Nullable private byte[] bytes;
+
+        @Override
+        public void dispose() {
+            this.bytes = null;
+        }
+
+        @Override
+        public byte[] read() {
+            byte[] bytes = this.bytes;
+            this.bytes = null;
+
+            return bytes;
+        }
+
+        @Override
+        public void write(byte[] bytes) {
+            this.bytes = bytes.clone();
+        }
+
+    }
+
+    @Test
+    public void testAdaptWriteRead() {
+        ArrayStorage legacy = new ArrayStorage();
+        BufferStorage storage = BufferStorage.adapt(legacy);
+
+        Random random = new Random();
+
+        byte[] bytes = new byte[100];
+        random.nextBytes(bytes);
+
+        storage.write(ByteBuffer.wrap(bytes));
+        assertEquals(bytes.length, storage.size());
+
+        ByteBuffer buffer = ByteBuffer.allocateDirect(128);
+        storage.read(buffer);
+
+        assertEquals(bytes.length, buffer.position());
+        assertEquals(ByteBuffer.wrap(bytes), buffer.flip());
+        assertNull(legacy.bytes);
+    }
+
+    @Test
+    public void testAdaptIdentity() {
+        BufferStorage storage = BufferStorage.adapt(new ArrayStorage());
+        assertSame(storage, BufferStorage.adapt(storage));
+    }
+
+}
@@ -0,0 +1,198 @@
+/*
+ * Copyright (c) 2022 Leon Linhart
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package io.github.themrmilchmann.stash.internal.platform;
+
+import io.github.themrmilchmann.stash.BufferSerializer;
+import io.github.themrmilchmann.stash.Secret;
+import io.github.themrmilchmann.stash.SecretSpec;
+import io.github.themrmilchmann.stash.Stash;
+import io.github.themrmilchmann.stash.StorageFactory;
+import io.github.themrmilchmann.stash.internal.platform.linux.GuardedMemoryStorageFactory;
+import io.github.themrmilchmann.stash.internal.platform.linux.LockedMemoryStorageFactory;
+import io.github.themrmilchmann.stash.internal.platform.linux.SecretMemoryStorageFactory;
+import io.github.themrmilchmann.stash.internal.platform.universal.AesGcmStorageFactory;
+import io.github.themrmilchmann.stash.internal.platform.universal.OffHeapStorageFactory;
+import io.github.themrmilchmann.stash.internal.platform.universal.UniversalStorageFactory;
+import io.github.themrmilchmann.stash.internal.platform.win32.DPAPIStorageFactory;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.*;
+
+/*
+ * Guards the number of bytes that are allocated on the heap by a steady-state
+ * acquire-get-release cycle against regressions.
+ *
+ * The budgets are the measured allocations per cycle for a 32-byte payload
+ * (including the deserialized copy of the payload) with some headroom for
+ * differences between JVMs. When an allocation is removed from the hot path,
+ * the respective budget should be lowered to lock in the improvement.
+ */
+public final class StashAllocationTest {
+
+    private static final int PAYLOAD_SIZE = 32;
+
+    private static final int WARMUP_CYCLES = 20_000;
+    private static final int MEASURED_CYCLES = 10_000;
+    private static final int ROUNDS = 5;
+
+    private static final BufferSerializer<byte[]> bytesSerializer = new BufferSerializer<>() {
+
+        @Override
+        public byte[] deserialize(ByteBuffer source) {
+            byte[] bytes = new byte[source.remaining()];
+            source.get(bytes);
+
+            return bytes;
+        }
+
+        @Override
+        public void serialize(byte[] data, ByteBuffer sink) {
+            sink.put(data);
+        }
+
+        @Override
+        public int sizeHint(byte[] data) {
+            return data.length;
+        }
+
+    };
+
+    private static final SecretSpec<byte[]> bytesSecretSpec = SecretSpec.builder(bytesSerializer)
+        .build();
+
+    private static com.sun.management.ThreadMXBean threadMXBean() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+
+        com.sun.management.ThreadMXBean threadMXBean = (com.sun.management.ThreadMXBean) bean;
+        assumeTrue(threadMXBean.isThreadAllocatedMemorySupported());
+
+        if (!threadMXBean.isThreadAllocatedMemoryEnabled()) threadMXBean.setThreadAllocatedMemoryEnabled(true);
+        return threadMXBean;
+    }
+
+    /*
+     * Returns the smallest number of bytes allocated per cycle over a couple of
+     * rounds to filter out one-off allocations (e.g. by the JIT or class
+     * initialization) that are not part of the steady state.
+     */
+    private static long measureAcquireRelease(Stash.Builder builder) {
+        com.sun.management.ThreadMXBean threadMXBean = threadMXBean();
+        long threadId = Thread.currentThread().getId();
+
+        byte[] payload = new byte[PAYLOAD_SIZE];
+        for (int i = 0; i < payload.length; i++) payload[i] = (byte) i;
+
+        try (Stash stash = builder.build()) {
+            Secret<byte[]> secret = stash.put(bytesSecretSpec, payload);
+            long checksum = 0;
+
+            for (int i = 0; i < WARMUP_CYCLES; i++) checksum += cycle(secret);
+
+            long bytesPerCycle = Long.MAX_VALUE;
+
+            for (int round = 0; round < ROUNDS; round++) {
+                long before = threadMXBean.getThreadAllocatedBytes(threadId);
+                for (int i = 0; i < MEASURED_CYCLES; i++) checksum += cycle(secret);
+                long after = threadMXBean.getThreadAllocatedBytes(threadId);
+
+                bytesPerCycle = Math.min(bytesPerCycle, (after - before) / MEASURED_CYCLES);
+            }
+
+            assertEquals((long) (WARMUP_CYCLES + ROUNDS * MEASURED_CYCLES) * payload[PAYLOAD_SIZE - 1], checksum);
+            return bytesPerCycle;
+        }
+    }
+
+    private static int cycle(Secret<byte[]> secret) {
+        try (Secret<byte[]>.Lock lock = secret.acquire()) {
+            return lock.get().orElseThrow()[PAYLOAD_SIZE - 1];
+        }
+    }
+
+    private static void assertAllocationBudget(long budget, StorageFactory<?> storageFactory) {
+        assumeTrue(storageFactory.isSupported());
+        assertAllocationBudget(budget, Stash.builder().withStorageFactory(storageFactory));
+    }
+
+    private static void assertAllocationBudget(long budget, Stash.Builder builder) {
+        long bytesPerCycle = measureAcquireRelease(builder);
+        assertTrue(bytesPerCycle <= budget, () -> "Allocated " + bytesPerCycle + " bytes per cycle (budget: " + budget + " bytes)");
+    }
+
+    @Test
+    public void testAcquireRelease_AesGcm() {
+        assertAllocationBudget(1600, new AesGcmStorageFactory());
+    }
+
+    /* The budget for DPAPI is an estimate since it cannot be measured on non-Windows hosts. */
+    @Test
+    public void testAcquireRelease_DPAPI() {
+        assertAllocationBudget(2048, new DPAPIStorageFactory());
+    }
+
+    @Test
+    public void testAcquireRelease_Envelope() {
+        assertAllocationBudget(800, Stash.builder().withEnvelopeEncryption(true));
+    }
+
+    @Test
+    public void testAcquireRelease_GuardedMemory() {
+        assertAllocationBudget(1280, new GuardedMemoryStorageFactory());
+    }
+
+    @Test
+    public void testAcquireRelease_KeepWarm() {
+        assertAllocationBudget(320, Stash.builder().withKeepWarm(Duration.ofMinutes(1), 1024));
+    }
+
+    @Test
+    public void testAcquireRelease_Keyring() {
+        assertAllocationBudget(400, StorageFactory.kernelKeyring());
+    }
+
+    @Test
+    public void testAcquireRelease_LockedMemory() {
+        assertAllocationBudget(960, new LockedMemoryStorageFactory());
+    }
+
+    @Test
+    public void testAcquireRelease_OffHeap() {
+        assertAllocationBudget(960, new OffHeapStorageFactory());
+    }
+
+    @Test
+    public void testAcquireRelease_SecretMemory() {
+        assertAllocationBudget(960, new SecretMemoryStorageFactory());
+    }
+
+    @Test
+    public void testAcquireRelease_Universal() {
+        assertAllocationBudget(704, new UniversalStorageFactory());
+    }
+
+}
\ No newline at end of file
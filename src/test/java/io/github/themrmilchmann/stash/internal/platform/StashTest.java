@@ -21,12 +21,35 @@
  */
 package io.github.themrmilchmann.stash.internal.platform;
 
+import io.github.themrmilchmann.stash.BufferSerializer;
+import io.github.themrmilchmann.stash.BufferStorage;
+import io.github.themrmilchmann.stash.CompositeLock;
+import io.github.themrmilchmann.stash.EncryptionAlgorithm;
+import io.github.themrmilchmann.stash.HistogramStashMetrics;
 import io.github.themrmilchmann.stash.Secret;
 import io.github.themrmilchmann.stash.SecretSpec;
 import io.github.themrmilchmann.stash.Serializer;
 import io.github.themrmilchmann.stash.Stash;
+import io.github.themrmilchmann.stash.Storage;
+import io.github.themrmilchmann.stash.StorageFactory;
 import org.junit.jupiter.api.Test;
 
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 public final class StashTest {
@@ -48,6 +71,115 @@ public final class StashTest {
     private static final SecretSpec<String> stringSecretSpec = SecretSpec.builder(stringSerializer)
         .build();
 
+    private static final BufferSerializer<String> stringBufferSerializer = new BufferSerializer<>() {
+
+        @Override
+        public String deserialize(ByteBuffer source) {
+            return StandardCharsets.UTF_8.decode(source).toString();
+        }
+
+        @Override
+        public void serialize(String data, ByteBuffer sink) {
+            StandardCharsets.UTF_8.newEncoder().encode(CharBuffer.wrap(data), sink, true);
+        }
+
+        @Override
+        public int sizeHint(String data) {
+            return data.length() * 3;
+        }
+
+    };
+
+    private static final SecretSpec<String> stringBufferSecretSpec = SecretSpec.builder(stringBufferSerializer)
+        .build();
+
+    private static StorageFactory<BufferStorage> retainingStorageFactory(AtomicInteger reads, AtomicInteger writes) {
+        return new StorageFactory<>() {
+
+            @Override
+            public BufferStorage create() {
+                return new BufferStorage() {
+
+                    private byte[] data;
+
+                    @Override
+                    public void dispose() {
+                        this.data = null;
+                    }
+
+                    @Override
+                    public int size() {
+                        return this.data.length;
+                    }
+
+                    @Override
+                    public void read(ByteBuffer dst) {
+                        this.peek(dst);
+                        this.data = null;
+                    }
+
+                    @Override
+                    public boolean peek(ByteBuffer dst) {
+                        reads.incrementAndGet();
+                        dst.put(this.data);
+                        return true;
+                    }
+
+                    @Override
+                    public void write(ByteBuffer src) {
+                        writes.incrementAndGet();
+                        this.data = new byte[src.remaining()];
+                        src.get(this.data);
+                    }
+
+                };
+            }
+
+            @Override
+            public boolean isSupported() {
+                return true;
+            }
+
+        };
+    }
+
+    private static StorageFactory<Storage> countingStorageFactory(AtomicInteger reads, AtomicInteger writes) {
+        return new StorageFactory<>() {
+
+            @Override
+            public Storage create() {
+                return new Storage() {
+
+                    private byte[] data;
+
+                    @Override
+                    public void dispose() {
+                        this.data = null;
+                    }
+
+                    @Override
+                    public byte[] read() {
+                        reads.incrementAndGet();
+                        return this.data;
+                    }
+
+                    @Override
+                    public void write(byte[] data) {
+                        writes.incrementAndGet();
+                        this.data = data.clone();
+                    }
+
+                };
+            }
+
+            @Override
+            public boolean isSupported() {
+                return true;
+            }
+
+        };
+    }
+
     @Test
     public void testLockAcquireAfterClear() {
         Stash stash = Stash.builder().build();
@@ -70,4 +202,697 @@ public final class StashTest {
         assertFalse(lock.setIfAcquired(() -> "bar"));
     }
 
+    @Test
+    public void testBufferSerializer() {
+        Stash stash = Stash.builder().build();
+        Secret<String> secret = stash.put(stringBufferSecretSpec, "foo");
+
+        try (Secret<String>.Lock lock = secret.acquire()) {
+            assertEquals("foo", lock.get().orElseThrow());
+            lock.set("bar".repeat(100));
+        }
+
+        try (Secret<String>.Lock lock = secret.acquire()) {
+            assertEquals("bar".repeat(100), lock.get().orElseThrow());
+        }
+    }
+
+    @Test
+    public void testEncryptionAlgorithm() {
+        for (EncryptionAlgorithm algorithm : EncryptionAlgorithm.values()) {
+            Stash stash = Stash.builder().withEncryptionAlgorithm(algorithm).build();
+            Secret<String> secret = stash.put(stringSecretSpec, "foo");
+
+            try (Secret<String>.Lock lock = secret.acquire()) {
+                assertEquals("foo", lock.get().orElseThrow());
+            }
+        }
+    }
+
+    @Test
+    public void testEncryptionAlgorithmWithStorageFactory() {
+        Stash.Builder builder = Stash.builder()
+            .withEncryptionAlgorithm(EncryptionAlgorithm.AES_GCM)
+            .withStorageFactory(StorageFactory.kernelKeyring());
+
+        assertThrows(IllegalStateException.class, builder::build);
+    }
+
+    @Test
+    public void testKeepWarm() throws InterruptedException {
+        AtomicInteger reads = new AtomicInteger(), writes = new AtomicInteger();
+        StorageFactory<Storage> storageFactory = countingStorageFactory(reads, writes);
+
+        Stash stash = Stash.builder()
+            .withStorageFactory(storageFactory)
+            .withKeepWarm(Duration.ofMillis(100), 1024)
+            .build();
+
+        Secret<String> secret = stash.put(stringSecretSpec, "foo");
+        assertEquals(1, writes.get());
+
+        for (int i = 0; i < 10; i++) {
+            try (Secret<String>.Lock lock = secret.acquire()) {
+                assertEquals("foo", lock.get().orElseThrow());
+            }
+        }
+
+        // The first acquisition reads from storage, all subsequent ones are served warm.
+        assertEquals(1, reads.get());
+        assertEquals(1, writes.get());
+
+        // After the grace period, the secret is written back to storage.
+        Thread.sleep(500);
+        assertEquals(2, writes.get());
+
+        try (Secret<String>.Lock lock = secret.acquire()) {
+            assertEquals("foo", lock.get().orElseThrow());
+        }
+
+        assertEquals(2, reads.get());
+
+        stash.clear();
+        assertThrows(IllegalStateException.class, secret::acquire);
+    }
+
+    @Test
+    public void testKeepWarmWriteFailure() {
+        AtomicBoolean isFailing = new AtomicBoolean();
+
+        StorageFactory<Storage> storageFactory = new StorageFactory<>() {
+
+            @Override
+            public Storage create() {
+                return new Storage() {
+
+                    private byte[] data;
+
+                    @Override
+                    public void dispose() {
+                        this.data = null;
+                    }
+
+                    @Override
+                    public byte[] read() {
+                        return this.data;
+                    }
+
+                    @Override
+                    public void write(byte[] data) {
+                        if (isFailing.get()) throw new IllegalStateException("Storage is unavailable");
+                        this.data = data.clone();
+                    }
+
+                };
+            }
+
+            @Override
+            public boolean isSupported() {
+                return true;
+            }
+
+        };
+
+        Stash stash = Stash.builder()
+            .withStorageFactory(storageFactory)
+            .withKeepWarm(Duration.ofHours(1), 3)
+            .build();
+
+        Secret<String> first = stash.put(stringSecretSpec, "foo");
+        Secret<String> second = stash.put(stringSecretSpec, "bar");
+
+        try (Secret<String>.Lock lock = first.acquire()) {
+            lock.set("baz");
+        }
+
+        isFailing.set(true);
+
+        // Releasing the second secret evicts the first one, which cannot be written to storage.
+        Secret<String>.Lock lock = second.acquire();
+        assertThrows(IllegalStateException.class, lock::close);
+
+        isFailing.set(false);
+
+        // The first secret keeps its plaintext instead of losing its value.
+        try (Secret<String>.Lock firstLock = first.acquire()) {
+            assertEquals("baz", firstLock.get().orElseThrow());
+        }
+
+        try (Secret<String>.Lock secondLock = second.acquire()) {
+            assertEquals("bar", secondLock.get().orElseThrow());
+        }
+
+        stash.clear();
+    }
+
+    @Test
+    public void testClearAfterDispose() {
+        Stash stash = Stash.builder().build();
+        List<Secret<String>> secrets = new ArrayList<>();
+        for (int i = 0; i < 4; i++) secrets.add(stash.put(stringSecretSpec, "foo" + i));
+
+        try (Secret<String>.Lock lock = secrets.get(0).acquire()) {
+            lock.dispose();
+        }
+
+        try (Secret<String>.Lock lock = secrets.get(2).acquire()) {
+            lock.dispose();
+        }
+
+        try (Secret<String>.Lock lock = secrets.get(3).acquire()) {
+            assertEquals("foo3", lock.get().orElseThrow());
+        }
+
+        stash.clear();
+        for (Secret<String> secret : secrets) assertThrows(IllegalStateException.class, secret::acquire);
+    }
+
+    @Test
+    public void testClearParallel() {
+        Stash stash = Stash.builder().withEncryptionAlgorithm(EncryptionAlgorithm.CHACHA20).build();
+        List<Secret<String>> secrets = new ArrayList<>();
+        for (int i = 0; i < 10_000; i++) secrets.add(stash.put(stringSecretSpec, "foo"));
+
+        stash.clear();
+        for (Secret<String> secret : secrets) assertThrows(IllegalStateException.class, secret::acquire);
+
+        // The stash remains usable after it has been cleared.
+        Secret<String> secret = stash.put(stringSecretSpec, "bar");
+
+        try (Secret<String>.Lock lock = secret.acquire()) {
+            assertEquals("bar", lock.get().orElseThrow());
+        }
+    }
+
+    @Test
+    public void testClose() {
+        Secret<String> secret;
+
+        try (Stash stash = Stash.builder().withWipeOnShutdown(Duration.ofSeconds(1)).build()) {
+            secret = stash.put(stringSecretSpec, "foo");
+
+            try (Secret<String>.Lock lock = secret.acquire()) {
+                assertEquals("foo", lock.get().orElseThrow());
+            }
+
+            stash.close();
+            assertThrows(IllegalStateException.class, () -> stash.put(stringSecretSpec, "bar"));
+        }
+
+        assertThrows(IllegalStateException.class, secret::acquire);
+    }
+
+    @Test
+    public void testWipeOnShutdownNegativeTimeout() {
+        assertThrows(IllegalArgumentException.class, () -> Stash.builder().withWipeOnShutdown(Duration.ofSeconds(-1)));
+    }
+
+    @Test
+    public void testRevokeAll() throws ExecutionException, InterruptedException {
+        Stash stash = Stash.builder().build();
+
+        Secret<String> held = stash.put(stringSecretSpec, "foo");
+        Secret<String> idle = stash.put(stringSecretSpec, "bar");
+
+        try (Secret<String>.Lock lock = held.acquire()) {
+            assertEquals("foo", lock.get().orElseThrow());
+
+            Future<Void> future = stash.revokeAll();
+
+            // Outstanding locks become unusable immediately.
+            assertTrue(lock.get().isEmpty());
+            assertThrows(IllegalStateException.class, () -> lock.set("baz"));
+            assertFalse(lock.setIfAcquired(() -> "baz"));
+
+            assertThrows(IllegalStateException.class, held::acquire);
+            assertThrows(IllegalStateException.class, idle::acquire);
+
+            future.get();
+        }
+
+        // Secrets that are put into the stash after the revocation are not affected.
+        Secret<String> secret = stash.put(stringSecretSpec, "baz");
+
+        try (Secret<String>.Lock lock = secret.acquire()) {
+            assertEquals("baz", lock.get().orElseThrow());
+        }
+
+        stash.clear();
+        assertThrows(IllegalStateException.class, secret::acquire);
+    }
+
+    @Test
+    public void testCloseAfterRevokeAll() throws ExecutionException, InterruptedException {
+        Stash stash = Stash.builder().build();
+        for (int i = 0; i < 10_000; i++) stash.put(stringSecretSpec, "foo");
+
+        Future<Void> future = stash.revokeAll();
+
+        // Closing the stash waits for the revoked secrets before the storage factory is closed.
+        stash.close();
+        future.get();
+
+        assertTrue(stash.revokeAll().isDone());
+    }
+
+    @Test
+    public void testPutAll() {
+        Stash stash = Stash.builder().build();
+
+        List<String> values = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) values.add("foo" + i);
+
+        List<Secret<String>> secrets = stash.putAll(stringSecretSpec, values);
+        assertEquals(values.size(), secrets.size());
+
+        for (int i = 0; i < values.size(); i++) {
+            try (Secret<String>.Lock lock = secrets.get(i).acquire()) {
+                assertEquals(values.get(i), lock.get().orElseThrow());
+            }
+        }
+
+        stash.clear();
+        for (Secret<String> secret : secrets) assertThrows(IllegalStateException.class, secret::acquire);
+    }
+
+    @Test
+    public void testPutAllFailure() {
+        Serializer<String> serializer = new Serializer<>() {
+
+            @Override
+            public String deserialize(byte[] bytes) {
+                return new String(bytes);
+            }
+
+            @Override
+            public byte[] serialize(String data) {
+                if (data.equals("fail")) throw new IllegalArgumentException();
+                return data.getBytes();
+            }
+
+        };
+
+        Stash stash = Stash.builder().build();
+
+        List<String> values = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) values.add((i == 500) ? "fail" : "foo" + i);
+
+        assertThrows(IllegalArgumentException.class, () -> stash.putAll(SecretSpec.builder(serializer).build(), values));
+    }
+
+    @Test
+    public void testAcquireAll() {
+        Stash stash = Stash.builder().build();
+
+        Secret<String> foo = stash.put(stringSecretSpec, "foo");
+        Secret<String> bar = stash.put(stringSecretSpec, "bar");
+        Secret<String> baz = stash.put(stringSecretSpec, "baz");
+
+        try (Secret<String>.Lock ignored = bar.acquire()) {
+            try (CompositeLock lock = Secret.acquireAll(baz, foo, bar, foo)) {
+                assertEquals("foo", lock.get(foo).get().orElseThrow());
+                assertEquals("bar", lock.get(bar).get().orElseThrow());
+                assertEquals("baz", lock.get(baz).get().orElseThrow());
+
+                lock.get(baz).set("qux");
+            }
+        }
+
+        try (Secret<String>.Lock lock = baz.acquire()) {
+            assertEquals("qux", lock.get().orElseThrow());
+        }
+
+        stash.clear();
+    }
+
+    @Test
+    public void testAcquireAllDisposed() {
+        AtomicInteger reads = new AtomicInteger();
+        Stash stash = Stash.builder().withStorageFactory(retainingStorageFactory(reads, new AtomicInteger())).build();
+
+        Secret<String> foo = stash.put(stringSecretSpec, "foo");
+        Secret<String> bar = stash.put(stringSecretSpec, "bar");
+
+        try (Secret<String>.Lock lock = bar.acquire()) {
+            lock.dispose();
+        }
+
+        assertEquals(1, reads.get());
+        assertThrows(IllegalStateException.class, () -> Secret.acquireAll(foo, bar));
+        assertEquals(2, reads.get());
+
+        // The lock for the first secret must have been released again, so the secret is read from storage again.
+        try (Secret<String>.Lock lock = foo.acquire()) {
+            lock.set("baz");
+        }
+
+        assertEquals(3, reads.get());
+
+        try (CompositeLock lock = Secret.acquireAll(foo)) {
+            assertEquals("baz", lock.get(foo).get().orElseThrow());
+            assertThrows(IllegalArgumentException.class, () -> lock.get(bar));
+        }
+
+        stash.clear();
+    }
+
+    @Test
+    public void testAcquireAllError() {
+        AtomicInteger reads = new AtomicInteger();
+        Stash stash = Stash.builder().withStorageFactory(retainingStorageFactory(reads, new AtomicInteger())).build();
+
+        SecretSpec<String> failingSpec = SecretSpec.builder(new Serializer<String>() {
+
+            @Override
+            public String deserialize(byte[] bytes) {
+                throw new AssertionError("Corrupted secret");
+            }
+
+            @Override
+            public byte[] serialize(String data) {
+                return data.getBytes();
+            }
+
+        }).build();
+
+        Secret<String> foo = stash.put(stringSecretSpec, "foo");
+        Secret<String> bar = stash.put(failingSpec, "bar");
+
+        assertThrows(AssertionError.class, () -> Secret.acquireAll(foo, bar));
+        assertEquals(2, reads.get());
+
+        // The lock for the first secret must have been released again, so the secret is read from storage again.
+        try (Secret<String>.Lock lock = foo.acquire()) {
+            assertEquals("foo", lock.get().orElseThrow());
+        }
+
+        assertEquals(3, reads.get());
+
+        stash.clear();
+    }
+
+    @Test
+    public void testAcquireAsync() throws ExecutionException, InterruptedException {
+        AtomicInteger reads = new AtomicInteger(), writes = new AtomicInteger();
+        List<Runnable> tasks = new ArrayList<>();
+
+        Stash stash = Stash.builder()
+            .withStorageFactory(countingStorageFactory(reads, writes))
+            .withCryptoExecutor(tasks::add, 1)
+            .build();
+
+        Secret<String> secret = stash.put(stringSecretSpec, "foo");
+
+        CompletableFuture<Secret<String>.Lock> future = secret.acquireAsync();
+        assertFalse(future.isDone());
+        assertEquals(0, reads.get());
+
+        // The executor is saturated.
+        assertThrows(ExecutionException.class, () -> secret.acquireAsync().get());
+
+        tasks.remove(0).run();
+        Secret<String>.Lock lock = future.get();
+        assertEquals("foo", lock.get().orElseThrow());
+        assertEquals(1, reads.get());
+
+        // A held secret is acquired and released without involving the executor.
+        CompletableFuture<Secret<String>.Lock> other = secret.acquireAsync();
+        assertTrue(other.isDone());
+        assertTrue(other.get().releaseAsync().isDone());
+
+        CompletableFuture<Void> release = lock.releaseAsync();
+        assertFalse(release.isDone());
+        assertEquals(1, writes.get());
+
+        tasks.remove(0).run();
+        assertTrue(release.isDone());
+        assertEquals(2, writes.get());
+
+        stash.clear();
+        assertThrows(ExecutionException.class, () -> secret.acquireAsync().get());
+    }
+
+    @Test
+    public void testTryAcquire() throws ExecutionException, InterruptedException {
+        CountDownLatch reading = new CountDownLatch(1), proceed = new CountDownLatch(1);
+
+        StorageFactory<Storage> storageFactory = new StorageFactory<>() {
+
+            @Override
+            public Storage create() {
+                return new Storage() {
+
+                    private byte[] data;
+
+                    @Override
+                    public void dispose() {
+                        this.data = null;
+                    }
+
+                    @Override
+                    public byte[] read() {
+                        reading.countDown();
+
+                        try {
+                            proceed.await();
+                        } catch (InterruptedException e) {
+                            throw new RuntimeException(e);
+                        }
+
+                        return this.data;
+                    }
+
+                    @Override
+                    public void write(byte[] data) {
+                        this.data = data.clone();
+                    }
+
+                };
+            }
+
+            @Override
+            public boolean isSupported() {
+                return true;
+            }
+
+        };
+
+        Stash stash = Stash.builder().withStorageFactory(storageFactory).build();
+        Secret<String> secret = stash.put(stringSecretSpec, "foo");
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+
+        try {
+            // Keep the secret busy while another thread is reading it from storage.
+            Future<?> loader = executor.submit(() -> {
+                try (Secret<String>.Lock lock = secret.acquire()) {
+                    assertEquals("foo", lock.get().orElseThrow());
+                }
+            });
+
+            reading.await();
+
+            assertTrue(secret.tryAcquire(Duration.ofMillis(50)).isEmpty());
+
+            Thread.currentThread().interrupt();
+            assertThrows(InterruptedException.class, secret::acquireInterruptibly);
+
+            proceed.countDown();
+            loader.get();
+
+            Secret<String>.Lock lock = secret.tryAcquire(Duration.ofSeconds(10)).orElseThrow();
+
+            try (lock) {
+                assertEquals("foo", lock.get().orElseThrow());
+            }
+
+            try (Secret<String>.Lock other = secret.acquireInterruptibly()) {
+                assertEquals("foo", other.get().orElseThrow());
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        stash.clear();
+    }
+
+    @Test
+    public void testConcurrentPut() throws ExecutionException, InterruptedException {
+        Stash stash = Stash.builder().build();
+        List<Secret<String>> secrets = Collections.synchronizedList(new ArrayList<>());
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+
+            for (int i = 0; i < 4; i++) {
+                futures.add(executor.submit(() -> {
+                    for (int j = 0; j < 1000; j++) {
+                        Secret<String> secret = stash.put(stringSecretSpec, "foo");
+
+                        // Dispose every other secret right away.
+                        if (j % 2 == 0) {
+                            try (Secret<String>.Lock lock = secret.acquire()) {
+                                lock.dispose();
+                            }
+                        } else {
+                            secrets.add(secret);
+                        }
+                    }
+                }));
+            }
+
+            for (Future<?> future : futures) future.get();
+        } finally {
+            executor.shutdown();
+        }
+
+        assertEquals(2000, secrets.size());
+
+        stash.clear();
+        for (Secret<String> secret : secrets) assertThrows(IllegalStateException.class, secret::acquire);
+    }
+
+    @Test
+    public void testReadOnlyLock() {
+        AtomicInteger reads = new AtomicInteger(), writes = new AtomicInteger();
+
+        Stash stash = Stash.builder().withStorageFactory(retainingStorageFactory(reads, writes)).build();
+        Secret<String> secret = stash.put(stringSecretSpec, "foo");
+        assertEquals(1, writes.get());
+
+        try (Secret<String>.Lock lock = secret.acquireReadOnly()) {
+            assertEquals("foo", lock.get().orElseThrow());
+            assertThrows(IllegalStateException.class, () -> lock.set("bar"));
+            assertFalse(lock.setIfAcquired(() -> "bar"));
+        }
+
+        // The storage kept the unmodified secret, so it is not written back.
+        assertEquals(1, reads.get());
+        assertEquals(1, writes.get());
+
+        try (Secret<String>.Lock lock = secret.acquire()) {
+            assertEquals("foo", lock.get().orElseThrow());
+        }
+
+        assertEquals(2, reads.get());
+        assertEquals(1, writes.get());
+
+        try (Secret<String>.Lock lock = secret.acquire()) {
+            lock.set("bar");
+        }
+
+        assertEquals(3, reads.get());
+        assertEquals(2, writes.get());
+
+        try (Secret<String>.Lock lock = secret.acquireReadOnly()) {
+            assertEquals("bar", lock.get().orElseThrow());
+        }
+
+        assertEquals(2, writes.get());
+
+        stash.clear();
+        assertThrows(IllegalStateException.class, secret::acquireReadOnly);
+    }
+
+    @Test
+    public void testConcurrentAcquire() throws ExecutionException, InterruptedException {
+        AtomicInteger reads = new AtomicInteger(), writes = new AtomicInteger();
+
+        Stash stash = Stash.builder().withStorageFactory(countingStorageFactory(reads, writes)).build();
+        Secret<String> secret = stash.put(stringSecretSpec, "foo");
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+
+        try (Secret<String>.Lock ignored = secret.acquire()) {
+            List<Future<?>> futures = new ArrayList<>();
+
+            for (int i = 0; i < 4; i++) {
+                futures.add(executor.submit(() -> {
+                    for (int j = 0; j < 1000; j++) {
+                        try (Secret<String>.Lock lock = secret.acquire()) {
+                            assertEquals("foo", lock.get().orElseThrow());
+                        }
+                    }
+                }));
+            }
+
+            for (Future<?> future : futures) future.get();
+        } finally {
+            executor.shutdown();
+        }
+
+        // The secret is held for the whole time and must thus only be read and written once.
+        assertEquals(1, reads.get());
+        assertEquals(2, writes.get());
+    }
+
+    @Test
+    public void testMetrics() {
+        HistogramStashMetrics metrics = new HistogramStashMetrics();
+
+        try (Stash stash = Stash.builder().withMetrics(metrics).build()) {
+            Secret<String> secret = stash.put(stringBufferSecretSpec, "foo");
+
+            assertEquals(1, metrics.getPutLatency().getCount());
+            assertEquals(3, metrics.getPayloadSize().getMax());
+            assertEquals(1, metrics.getSerializeLatency().getCount());
+            assertEquals(1, metrics.getEncryptLatency().getCount());
+
+            try (Secret<String>.Lock lock = secret.acquire()) {
+                try (Secret<String>.Lock ignored = secret.acquireReadOnly()) {
+                    assertEquals("foo", lock.get().orElseThrow());
+                }
+
+                lock.set("bar");
+            }
+
+            assertEquals(1, metrics.getAcquireColdLatency().getCount());
+            assertEquals(1, metrics.getAcquireWarmLatency().getCount());
+            assertEquals(2, metrics.getReleaseLatency().getCount());
+            assertEquals(1, metrics.getDecryptLatency().getCount());
+            assertEquals(1, metrics.getDeserializeLatency().getCount());
+            assertEquals(2, metrics.getSerializeLatency().getCount());
+            assertEquals(2, metrics.getEncryptLatency().getCount());
+        }
+    }
+
+    @Test
+    public void testMetricsDoNotReadStorage() {
+        AtomicInteger reads = new AtomicInteger(), writes = new AtomicInteger();
+        HistogramStashMetrics metrics = new HistogramStashMetrics();
+
+        try (Stash stash = Stash.builder().withStorageFactory(countingStorageFactory(reads, writes)).withMetrics(metrics).build()) {
+            stash.put(stringSecretSpec, "foo");
+
+            // The size of a put is taken from the write instead of reading the storage.
+            assertEquals(0, reads.get());
+            assertEquals(1, writes.get());
+            assertEquals(3, metrics.getPayloadSize().getMax());
+        }
+    }
+
+    @Test
+    public void testMetricsHistogram() {
+        HistogramStashMetrics.Histogram histogram = new HistogramStashMetrics.Histogram();
+        assertEquals(0, histogram.getValueAtPercentile(50));
+
+        for (long value = 1; value <= 1000; value++) histogram.record(value);
+
+        assertEquals(1000, histogram.getCount());
+        assertEquals(1000, histogram.getMax());
+        assertEquals(500.5D, histogram.getMean());
+        assertEquals(1, histogram.getValueAtPercentile(0));
+        assertEquals(1000, histogram.getValueAtPercentile(100));
+
+        long median = histogram.getValueAtPercentile(50);
+        assertTrue(median >= 500 && median <= 500 * 17 / 16, () -> "Median: " + median);
+
+        long p99 = histogram.getValueAtPercentile(99);
+        assertTrue(p99 >= 990 && p99 <= 1000, () -> "P99: " + p99);
+
+        assertThrows(IllegalArgumentException.class, () -> histogram.getValueAtPercentile(101));
+    }
+
 }
\ No newline at end of file
@@ -0,0 +1,95 @@
+/*
+ * Copyright (c) 2022 Leon Linhart
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package io.github.themrmilchmann.stash.internal.platform.linux;
+
+import com.sun.jna.Pointer;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledOnOs;
+import org.junit.jupiter.api.condition.OS;
+
+import java.lang.reflect.Field;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.*;
+
+@EnabledOnOs(OS.LINUX)
+public final class GuardedMemoryPoolTest {
+
+    private static GuardedMemoryPool reserve() {
+        GuardedMemoryPool pool;
+
+        try {
+            pool = GuardedMemoryPool.reserve(MemoryPool.CHUNK_SIZE);
+        } catch (RuntimeException e) {
+            // Reserving the pool fails if RLIMIT_MEMLOCK is too low.
+            pool = null;
+        }
+
+        assumeTrue(pool != null);
+        return pool;
+    }
+
+    private static int[] getAccesses(GuardedMemoryPool pool) throws ReflectiveOperationException {
+        Field field = GuardedMemoryPool.class.getDeclaredField("accesses");
+        field.setAccessible(true);
+
+        return (int[]) field.get(pool);
+    }
+
+    @Test
+    public void testNestedAccess() throws ReflectiveOperationException {
+        try (GuardedMemoryPool pool = reserve()) {
+            int[] accesses = getAccesses(pool);
+            Pointer address = pool.allocate(MemoryPool.CHUNK_SIZE);
+
+            pool.beginAccess(address, 16);
+            pool.beginAccess(address.share(16), 16);
+            assertEquals(2, accesses[0]);
+
+            address.setLong(0, 42L);
+
+            pool.endAccess(address, 16);
+            assertEquals(1, accesses[0]);
+            assertEquals(42L, address.getLong(0));
+
+            pool.endAccess(address.share(16), 16);
+            assertEquals(0, accesses[0]);
+        }
+    }
+
+    @Test
+    public void testAccessSpanningPages() throws ReflectiveOperationException {
+        try (GuardedMemoryPool pool = reserve()) {
+            int[] accesses = getAccesses(pool);
+            Pointer address = pool.allocate(MemoryPool.CHUNK_SIZE);
+
+            pool.beginAccess(address, MemoryPool.CHUNK_SIZE);
+            for (int i = 0; i < accesses.length; i++) assertEquals(1, accesses[i]);
+
+            address.setMemory(0, MemoryPool.CHUNK_SIZE, (byte) 1);
+
+            pool.endAccess(address, MemoryPool.CHUNK_SIZE);
+            for (int i = 0; i < accesses.length; i++) assertEquals(0, accesses[i]);
+        }
+    }
+
+}
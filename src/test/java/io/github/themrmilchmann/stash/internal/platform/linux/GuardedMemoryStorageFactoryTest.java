@@ -0,0 +1,83 @@
+/*
+ * Copyright (c) 2022 Leon Linhart
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package io.github.themrmilchmann.stash.internal.platform.linux;
+
+import io.github.themrmilchmann.stash.internal.platform.universal.OffHeapStorage;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.DisabledOnOs;
+import org.junit.jupiter.api.condition.EnabledOnOs;
+import org.junit.jupiter.api.condition.OS;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.*;
+
+public final class GuardedMemoryStorageFactoryTest {
+
+    @DisabledOnOs(OS.LINUX)
+    @Test
+    public void testIsSupported_Other() {
+        GuardedMemoryStorageFactory factory = new GuardedMemoryStorageFactory();
+        assertFalse(factory.isSupported());
+    }
+
+    @EnabledOnOs(OS.LINUX)
+    @Test
+    public void testWriteRead_Linux() {
+        GuardedMemoryStorageFactory factory = new GuardedMemoryStorageFactory();
+
+        // Reserving the pool fails if RLIMIT_MEMLOCK is too low.
+        assumeTrue(factory.isSupported());
+
+        OffHeapStorage storage = factory.create();
+        Random random = new Random();
+
+        byte[] bytes = new byte[100];
+        random.nextBytes(bytes);
+
+        storage.write(bytes);
+        assertArrayEquals(bytes, storage.read());
+
+        storage.dispose();
+    }
+
+    @EnabledOnOs(OS.LINUX)
+    @Test
+    public void testWriteReadLarge_Linux() {
+        GuardedMemoryStorageFactory factory = new GuardedMemoryStorageFactory();
+        assumeTrue(factory.isSupported());
+
+        // The data exceeds the size of the first pool.
+        OffHeapStorage storage = factory.create();
+        Random random = new Random();
+
+        byte[] bytes = new byte[2 * 1024 * 1024];
+        random.nextBytes(bytes);
+
+        storage.write(bytes);
+        assertArrayEquals(bytes, storage.read());
+
+        storage.dispose();
+    }
+
+}
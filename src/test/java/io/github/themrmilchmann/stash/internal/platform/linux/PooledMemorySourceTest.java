@@ -0,0 +1,117 @@
+/*
+ * Copyright (c) 2022 Leon Linhart
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package io.github.themrmilchmann.stash.internal.platform.linux;
+
+import com.sun.jna.Memory;
+import com.sun.jna.Pointer;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public final class PooledMemorySourceTest {
+
+    private static final class TestPool extends MemoryPool {
+
+        private final AtomicInteger releases;
+
+        TestPool(Memory memory, AtomicInteger releases) {
+            super(memory, chunks(memory.size()));
+            this.releases = releases;
+        }
+
+        @Override
+        void release() {
+            this.releases.incrementAndGet();
+        }
+
+    }
+
+    @Test
+    public void testGrowAndRelease() {
+        List<Memory> regions = new ArrayList<>();
+        AtomicInteger releases = new AtomicInteger();
+
+        PooledMemorySource source = new PooledMemorySource(size -> {
+            Memory memory = new Memory((long) MemoryPool.chunks(size) * MemoryPool.CHUNK_SIZE);
+            regions.add(memory);
+
+            return new TestPool(memory, releases);
+        });
+
+        assertTrue(source.isAvailable());
+
+        Pointer first = source.allocate(PooledMemorySource.POOL_SIZE);
+        assertEquals(1, regions.size());
+
+        // The first pool is exhausted, so that another one must be reserved.
+        long size = 2 * PooledMemorySource.POOL_SIZE;
+        Pointer second = source.allocate(size);
+        assertEquals(2, regions.size());
+
+        source.beginAccess(second, size);
+        second.setMemory(0, size, (byte) 1);
+        source.endAccess(second, size);
+
+        source.free(second, size);
+        assertEquals(1, releases.get());
+
+        // The first pool is never released.
+        source.free(first, PooledMemorySource.POOL_SIZE);
+        assertEquals(1, releases.get());
+    }
+
+    @Test
+    public void testExhausted() {
+        Memory region = new Memory(PooledMemorySource.POOL_SIZE);
+        AtomicInteger reservations = new AtomicInteger();
+
+        PooledMemorySource source = new PooledMemorySource(size -> {
+            if (reservations.getAndIncrement() > 0) throw new RuntimeException("RLIMIT_MEMLOCK exceeded");
+            return new TestPool(region, new AtomicInteger());
+        });
+
+        Pointer pooled = source.allocate(PooledMemorySource.POOL_SIZE);
+        assertEquals(Pointer.nativeValue(region), Pointer.nativeValue(pooled));
+
+        // Memory must never be served from an unprotected source.
+        assertThrows(OutOfMemoryError.class, () -> source.allocate(MemoryPool.CHUNK_SIZE));
+        assertEquals(2, reservations.get());
+
+        source.free(pooled, PooledMemorySource.POOL_SIZE);
+        assertNotNull(source.allocate(MemoryPool.CHUNK_SIZE));
+    }
+
+    @Test
+    public void testUnavailable() {
+        PooledMemorySource source = new PooledMemorySource(size -> {
+            throw new IllegalStateException("Not supported");
+        });
+
+        assertFalse(source.isAvailable());
+        assertThrows(IllegalStateException.class, () -> source.allocate(MemoryPool.CHUNK_SIZE));
+    }
+
+}
\ No newline at end of file
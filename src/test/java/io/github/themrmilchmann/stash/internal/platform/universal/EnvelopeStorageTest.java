@@ -0,0 +1,126 @@
+/*
+ * Copyright (c) 2022 Leon Linhart
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package io.github.themrmilchmann.stash.internal.platform.universal;
+
+import io.github.themrmilchmann.stash.internal.SlabAllocator;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Field;
+import java.security.SecureRandom;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public final class EnvelopeStorageTest {
+
+    private static Field fieldSlot, fieldMasterKey;
+
+    @BeforeAll
+    public static void init() throws NoSuchFieldException {
+        Class<?> cls = EnvelopeStorage.class;
+
+        fieldSlot = cls.getDeclaredField("slot");
+        fieldSlot.setAccessible(true);
+
+        fieldMasterKey = cls.getDeclaredField("masterKey");
+        fieldMasterKey.setAccessible(true);
+    }
+
+    @Test
+    public void testWriteDispose() throws IllegalAccessException {
+        EnvelopeStorageFactory factory = new EnvelopeStorageFactory(new SecureRandom());
+        EnvelopeStorage storage = factory.create();
+
+        assertNull(fieldSlot.get(storage));
+        assertNull(fieldMasterKey.get(storage));
+
+        Random random = new Random();
+
+        byte[] bytes = new byte[100];
+        random.nextBytes(bytes);
+
+        storage.write(bytes);
+        assertNotNull(fieldSlot.get(storage));
+        assertNotNull(fieldMasterKey.get(storage));
+
+        storage.dispose();
+        assertNull(fieldSlot.get(storage));
+        assertNull(fieldMasterKey.get(storage));
+    }
+
+    @Test
+    public void testWriteRead() throws IllegalAccessException {
+        EnvelopeStorageFactory factory = new EnvelopeStorageFactory(new SecureRandom());
+        EnvelopeStorage storage = factory.create();
+
+        Random random = new Random();
+
+        byte[] bytes = new byte[100];
+        random.nextBytes(bytes);
+
+        storage.write(bytes);
+
+        SlabAllocator.Slot slot = (SlabAllocator.Slot) fieldSlot.get(storage);
+        assertNotNull(slot);
+
+        byte[] read = storage.read();
+        assertArrayEquals(bytes, read);
+        assertNull(fieldMasterKey.get(storage));
+
+        // The slot is retained for reuse, but must not contain any data.
+        assertSame(slot, fieldSlot.get(storage));
+        for (byte b : slot.base().getByteArray(slot.offset(), slot.size())) assertEquals((byte) 0, b);
+
+        storage.dispose();
+    }
+
+    @Test
+    public void testRotate() throws IllegalAccessException {
+        EnvelopeStorageFactory factory = new EnvelopeStorageFactory(new SecureRandom());
+        EnvelopeStorage storage = factory.create();
+
+        Random random = new Random();
+
+        byte[] bytes = new byte[100];
+        random.nextBytes(bytes);
+
+        storage.write(bytes);
+
+        MasterKey masterKey = (MasterKey) fieldMasterKey.get(storage);
+        assertNotNull(masterKey);
+
+        factory.rotate();
+        assertFalse(masterKey.isDestroyed());
+
+        assertArrayEquals(bytes, storage.read());
+        assertTrue(masterKey.isDestroyed());
+        assertThrows(IllegalStateException.class, masterKey::getEncoded);
+
+        storage.write(bytes);
+        assertNotSame(masterKey, fieldMasterKey.get(storage));
+        assertArrayEquals(bytes, storage.read());
+
+        storage.dispose();
+    }
+
+}
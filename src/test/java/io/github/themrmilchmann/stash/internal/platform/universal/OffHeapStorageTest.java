@@ -0,0 +1,158 @@
+/*
+ * Copyright (c) 2022 Leon Linhart
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package io.github.themrmilchmann.stash.internal.platform.universal;
+
+import io.github.themrmilchmann.stash.internal.InstancePool;
+import io.github.themrmilchmann.stash.internal.SlabAllocator;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import javax.crypto.SecretKey;
+import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public final class OffHeapStorageTest {
+
+    private static final OffHeapStorageFactory factory = new OffHeapStorageFactory();
+
+    private static Field fieldSlot;
+
+    @BeforeAll
+    public static void init() throws NoSuchFieldException {
+        Class<?> cls = OffHeapStorage.class;
+
+        fieldSlot = cls.getDeclaredField("slot");
+        fieldSlot.setAccessible(true);
+    }
+
+    @Test
+    public void testWriteDispose() throws IllegalAccessException {
+        OffHeapStorage storage = factory.create();
+        assertNull(fieldSlot.get(storage));
+
+        Random random = new Random();
+
+        byte[] bytes = new byte[100];
+        random.nextBytes(bytes);
+
+        storage.write(bytes);
+        assertNotNull(fieldSlot.get(storage));
+
+        storage.dispose();
+        assertNull(fieldSlot.get(storage));
+    }
+
+    @Test
+    public void testWriteRead() throws IllegalAccessException {
+        OffHeapStorage storage = factory.create();
+        assertNull(fieldSlot.get(storage));
+
+        Random random = new Random();
+
+        byte[] bytes = new byte[100];
+        random.nextBytes(bytes);
+
+        storage.write(bytes);
+
+        SlabAllocator.Slot slot = (SlabAllocator.Slot) fieldSlot.get(storage);
+        assertNotNull(slot);
+
+        byte[] read = storage.read();
+        assertArrayEquals(bytes, read);
+
+        // The slot is retained for reuse, but must not contain any data.
+        assertSame(slot, fieldSlot.get(storage));
+        for (byte b : slot.base().getByteArray(slot.offset(), slot.size())) assertEquals((byte) 0, b);
+
+        storage.dispose();
+    }
+
+    @Test
+    public void testWriteReadRepeated() {
+        OffHeapStorage storage = factory.create();
+        Random random = new Random();
+
+        for (int i = 0; i < 10; i++) {
+            byte[] bytes = new byte[random.nextInt(256)];
+            random.nextBytes(bytes);
+
+            storage.write(bytes);
+            assertArrayEquals(bytes, storage.read());
+        }
+
+        storage.dispose();
+    }
+
+    @Test
+    public void testPeekRepeated() {
+        OffHeapStorage storage = factory.create();
+        Random random = new Random();
+
+        byte[] bytes = new byte[100];
+        random.nextBytes(bytes);
+
+        storage.write(bytes);
+
+        for (int i = 0; i < 10; i++) {
+            byte[] peeked = new byte[bytes.length];
+            assertTrue(storage.peek(ByteBuffer.wrap(peeked)));
+            assertArrayEquals(bytes, peeked);
+        }
+
+        assertArrayEquals(bytes, storage.read());
+        storage.dispose();
+    }
+
+    @Test
+    public void testCipherContextCleared() throws NoSuchFieldException, IllegalAccessException {
+        Field fieldCiphers = OffHeapStorageFactory.class.getDeclaredField("ciphers");
+        fieldCiphers.setAccessible(true);
+
+        Field fieldKey = CipherContext.class.getDeclaredField("key");
+        fieldKey.setAccessible(true);
+
+        OffHeapStorageFactory storageFactory = new OffHeapStorageFactory();
+        OffHeapStorage storage = storageFactory.create();
+
+        byte[] bytes = new byte[100];
+        new Random().nextBytes(bytes);
+
+        storage.write(bytes);
+        assertArrayEquals(bytes, storage.read());
+        storage.dispose();
+
+        @SuppressWarnings("unchecked")
+        CipherContext context = ((InstancePool<CipherContext>) fieldCiphers.get(storageFactory)).acquire();
+
+        SecretKey key = (SecretKey) fieldKey.get(context);
+        assertTrue(key.isDestroyed());
+        assertThrows(IllegalStateException.class, key::getEncoded);
+        for (byte b : context.key()) assertEquals((byte) 0, b);
+        for (byte b : context.nonce()) assertEquals((byte) 0, b);
+
+        storageFactory.close();
+    }
+
+}
@@ -37,7 +37,7 @@ public final class UniversalStorageTest {
 
     @BeforeAll
     public static void init() throws NoSuchFieldException {
-        Class<?> cls = UniversalStorage.class;
+        Class<?> cls = HeapCipherStorage.class;
 
         fieldKey = cls.getDeclaredField("key");
         fieldKey.setAccessible(true);
@@ -111,4 +111,18 @@ public final class UniversalStorageTest {
         for (byte b : data) assertEquals((byte) 0, b);
     }
 
+    @Test
+    public void testWriteReadRepeated() {
+        UniversalStorage storage = factory.create();
+        Random random = new Random();
+
+        for (int i = 0; i < 10; i++) {
+            byte[] bytes = new byte[100];
+            random.nextBytes(bytes);
+
+            storage.write(bytes);
+            assertArrayEquals(bytes, storage.read());
+        }
+    }
+
 }
\ No newline at end of file
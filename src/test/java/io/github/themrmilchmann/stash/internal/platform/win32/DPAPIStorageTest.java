@@ -21,6 +21,7 @@
  */
 package io.github.themrmilchmann.stash.internal.platform.win32;
 
+import com.sun.jna.Memory;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.condition.EnabledOnOs;
@@ -84,9 +85,16 @@ public final class DPAPIStorageTest {
         assertNotNull(fieldMemory.get(storage));
         assertNotNull(fieldHMemory.get(storage));
 
+        Memory memory = (Memory) fieldMemory.get(storage);
         byte[] read = storage.read();
 
         assertArrayEquals(bytes, read);
+
+        // The memory is retained for reuse, but must not contain any data.
+        assertSame(memory, fieldMemory.get(storage));
+        for (byte b : memory.getByteArray(0, (int) memory.size())) assertEquals((byte) 0, b);
+
+        storage.dispose();
         assertNull(fieldMemory.get(storage));
         assertNull(fieldHMemory.get(storage));
     }